@@ -0,0 +1,302 @@
+package hudson.plugins.jboss;
+
+import hudson.EnvVars;
+import hudson.Util;
+import hudson.model.BuildListener;
+import hudson.plugins.jboss.JBossBuilder.ServerBean;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Manages application class-data-sharing archive of the local server.
+ *
+ * Archive is generated on exit of the first server started without it
+ * (<code>-XX:ArchiveClassesAtExit</code>) and reused by next starts
+ * (<code>-XX:SharedArchiveFile</code>). Name of the archive contains digest of the JDK
+ * and class path of the server, so archive is regenerated when any of them changes.
+ *
+ * Options are appended to <code>JAVA_OPTS</code>, which <code>run.sh</code> passes only to the server JVM,
+ * not to the <code>java -version</code> probe, so only the server writes the archive.
+ * Defaults of <code>run.conf</code> are used by <code>run.sh</code> only when <code>JAVA_OPTS</code> is empty,
+ * so they are merged with the options.
+ * Startup time is recorded by the mode chosen for the start, not by the archive found afterwards.
+ *
+ * Dynamic archives need JDK 13 or newer, version is read from <code>release</code> file of the JDK
+ * (<code>JAVA_HOME</code>, or the JDK of <code>java</code> found on <code>PATH</code>).
+ * Older JDKs, which JBoss 4/5 usually runs on, are reported as unsupported and the server starts as usual.
+ */
+public class ClassDataSharing {
+
+	private static final String ARCHIVE_PREFIX = "jboss-";
+	private static final String ARCHIVE_SUFFIX = ".jsa";
+	private static final String STARTUP_TIMES = "startup-times.properties";
+	private static final int MIN_JAVA_VERSION = 13;
+
+	private static final Pattern RUN_CONF_DEFAULTS = Pattern.compile("(?m)^\\s*JAVA_OPTS=\"([^\"$]*)\"");
+
+	private final File dir;
+	private final File binDir;
+	private final File archive;
+	private final File javaHome;
+	private final String javaVersion;
+
+	/**
+	 * Whether the start prepared by {@link #prepare(BuildListener)} uses the archive, null if not prepared.
+	 */
+	private Boolean withArchive;
+
+	/**
+	 * @param server local server
+	 * @param env environment of the build, used to find <code>JAVA_HOME</code> or <code>PATH</code>
+	 */
+	public ClassDataSharing(ServerBean server, EnvVars env) {
+		this.dir = new File(server.getHomeDir(), "server/" + server.getServerName() + "/cds");
+		this.binDir = new File(server.getHomeDir(), "bin");
+		this.javaHome = findJavaHome(env);
+		Properties release = readRelease(javaHome);
+		this.javaVersion = release != null ? unquote(release.getProperty("JAVA_VERSION")) : null;
+		this.archive = new File(dir, ARCHIVE_PREFIX + computeDigest(server, javaHome, release) + ARCHIVE_SUFFIX);
+	}
+
+	/**
+	 * Checks if the JDK of the server supports dynamic archives.
+	 */
+	public boolean isSupported() {
+		return featureVersion(javaVersion) >= MIN_JAVA_VERSION;
+	}
+
+	public boolean isArchiveAvailable() {
+		return archive.isFile();
+	}
+
+	/**
+	 * Removes outdated archives and gets JVM options for the next start.
+	 *
+	 * @param listener for logging purpose
+	 * @return options to be appended to <code>JAVA_OPTS</code>, null if the JDK does not support CDS
+	 */
+	public String prepare(BuildListener listener) {
+		if (!isSupported()) {
+			listener.getLogger().println(String.format(
+					"CDS: not supported by JDK %s (%s), JDK %d or newer is required. Server is started without archive.",
+					javaVersion != null ? javaVersion : "of unknown version", javaHome != null ? javaHome : "not found",
+					MIN_JAVA_VERSION));
+			return null;
+		}
+
+		dir.mkdirs();
+		File[] archives = dir.listFiles();
+		if (archives != null) {
+			for (File old : archives) {
+				if (old.getName().endsWith(ARCHIVE_SUFFIX) && !old.equals(archive)) {
+					listener.getLogger().println("CDS: JDK or class path changed, removing outdated archive " + old.getName());
+					old.delete();
+				}
+			}
+		}
+
+		withArchive = isArchiveAvailable();
+		if (withArchive) {
+			listener.getLogger().println("CDS: using archive " + archive.getName());
+			return "-Xshare:auto -XX:SharedArchiveFile=" + archive.getAbsolutePath();
+		}
+		listener.getLogger().println("CDS: no archive yet, " + archive.getName() + " will be generated on server shutdown");
+		return "-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath();
+	}
+
+	/**
+	 * Gets <code>JAVA_OPTS</code> of the server with given options appended.
+	 *
+	 * @param env environment of the build
+	 * @param options options returned by {@link #prepare(BuildListener)}
+	 * @param unix true for <code>run.sh</code>, <code>run.bat</code> always appends its defaults
+	 */
+	public String javaOpts(EnvVars env, String options, boolean unix) {
+		String javaOpts = Util.fixEmptyAndTrim(env.get("JAVA_OPTS"));
+		if (javaOpts == null && unix) {
+			javaOpts = readRunConfDefaults();
+		}
+		return javaOpts != null ? javaOpts + " " + options : options;
+	}
+
+	/**
+	 * Reads default <code>JAVA_OPTS</code> of <code>bin/run.conf</code>, the first assignment not referring other variables.
+	 *
+	 * @return the defaults, null if not found
+	 */
+	private String readRunConfDefaults() {
+		File runConf = new File(binDir, "run.conf");
+		if (!runConf.isFile()) {
+			return null;
+		}
+		try {
+			Matcher matcher = RUN_CONF_DEFAULTS.matcher(FileUtils.readFileToString(runConf));
+			return matcher.find() ? Util.fixEmptyAndTrim(matcher.group(1)) : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Stores startup time of the server and reports times with and without archive.
+	 * Nothing is recorded if the start has not been prepared with CDS options (JDK does not support CDS).
+	 *
+	 * @param millis startup time in milliseconds
+	 * @param listener for logging purpose
+	 */
+	public void recordStartupTime(long millis, BuildListener listener) {
+		if (withArchive == null) {
+			return;
+		}
+		Properties times = new Properties();
+		File file = new File(dir, STARTUP_TIMES);
+		try {
+			if (file.isFile()) {
+				InputStream in = new FileInputStream(file);
+				try {
+					times.load(in);
+				} finally {
+					IOUtils.closeQuietly(in);
+				}
+			}
+			times.setProperty(withArchive ? "withArchive" : "withoutArchive", String.valueOf(millis));
+			OutputStream out = new FileOutputStream(file);
+			try {
+				times.store(out, "Last startup times of the server in milliseconds");
+			} finally {
+				IOUtils.closeQuietly(out);
+			}
+		} catch (IOException e) {
+			listener.getLogger().println("CDS: unable to store startup time: " + e.getMessage());
+		}
+
+		listener.getLogger().println(String.format("CDS: last startup with archive %s, without archive %s",
+				format(times.getProperty("withArchive")), format(times.getProperty("withoutArchive"))));
+	}
+
+	private static String format(String millis) {
+		return millis == null ? "n/a" : Long.parseLong(millis) / 1000.0 + " sec";
+	}
+
+	/**
+	 * Finds home of the JDK used by the server, <code>JAVA_HOME</code> or the JDK of <code>java</code> on <code>PATH</code>.
+	 * Links are resolved, so change of the JDK behind the link is detected.
+	 *
+	 * @return home of the JDK, null if not found
+	 */
+	private static File findJavaHome(EnvVars env) {
+		String javaHome = Util.fixEmpty(env.get("JAVA_HOME"));
+		if (javaHome != null) {
+			return new File(javaHome);
+		}
+		String path = env.get("PATH");
+		if (path == null) {
+			return null;
+		}
+		for (String dir : path.split(File.pathSeparator)) {
+			for (String name : new String[]{"java", "java.exe"}) {
+				File java = new File(dir, name);
+				if (java.isFile()) {
+					try {
+						// <home>/bin/java
+						return java.getCanonicalFile().getParentFile().getParentFile();
+					} catch (IOException e) {
+						return null;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reads <code>release</code> file of the JDK.
+	 *
+	 * @return properties of the release, null if not available (JDK 8 and older may have none)
+	 */
+	private static Properties readRelease(File javaHome) {
+		if (javaHome == null) {
+			return null;
+		}
+		File file = new File(javaHome, "release");
+		if (!file.isFile()) {
+			return null;
+		}
+		Properties release = new Properties();
+		try {
+			InputStream in = new FileInputStream(file);
+			try {
+				release.load(in);
+			} finally {
+				IOUtils.closeQuietly(in);
+			}
+		} catch (IOException e) {
+			return null;
+		}
+		return release;
+	}
+
+	private static String unquote(String value) {
+		if (value != null && value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+			return value.substring(1, value.length() - 1);
+		}
+		return value;
+	}
+
+	/**
+	 * Gets feature version of the JDK, e.g. 8 for <code>1.8.0_202</code> and 17 for <code>17.0.2</code>.
+	 *
+	 * @return feature version, 0 if unknown
+	 */
+	static int featureVersion(String javaVersion) {
+		if (javaVersion == null) {
+			return 0;
+		}
+		String[] parts = javaVersion.split("[._+-]");
+		try {
+			int version = Integer.parseInt(parts[0]);
+			return version == 1 && parts.length > 1 ? Integer.parseInt(parts[1]) : version;
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Computes digest of the JDK and jars on the class path of the server.
+	 */
+	private static String computeDigest(ServerBean server, File javaHome, Properties release) {
+		StringBuilder description = new StringBuilder();
+		description.append(javaHome).append('\n');
+		if (release != null) {
+			description.append(new TreeMap<Object, Object>(release)).append('\n');
+		}
+		for (String path : new String[]{"bin", "lib", "server/" + server.getServerName() + "/lib"}) {
+			File[] jars = new File(server.getHomeDir(), path).listFiles();
+			if (jars == null) {
+				continue;
+			}
+			Arrays.sort(jars);
+			for (File jar : jars) {
+				if (jar.getName().endsWith(".jar")) {
+					description.append(jar.getPath()).append(':')
+							.append(jar.length()).append(':')
+							.append(jar.lastModified()).append('\n');
+				}
+			}
+		}
+		return Util.getDigestOf(description.toString());
+	}
+}
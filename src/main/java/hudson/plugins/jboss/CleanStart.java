@@ -0,0 +1,189 @@
+package hudson.plugins.jboss;
+
+import hudson.Util;
+import hudson.model.BuildListener;
+import hudson.plugins.jboss.JBossBuilder.ServerBean;
+import hudson.util.DaemonThreadFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Cleans <code>tmp</code>, <code>work</code> and <code>data</code> directories of the local server.
+ *
+ * Directories are atomically renamed aside before start, so the server can be started
+ * immediately, and old trees are deleted in parallel in background.
+ * Trees which are being deleted by another cleanup are left to it, so they are neither deleted
+ * nor counted twice.
+ */
+public final class CleanStart {
+
+	private static final Logger LOGGER = Logger.getLogger(CleanStart.class.getName());
+
+	private static final String[] DIRECTORIES = new String[]{"tmp", "work", "data"};
+	private static final String TRASH_SUFFIX = ".deleted-";
+
+	private static final ExecutorService deleters = Executors.newCachedThreadPool(new DaemonThreadFactory());
+
+	/**
+	 * Trees being deleted by any cleanup.
+	 */
+	private static final Set<File> deleting = Collections.synchronizedSet(new HashSet<File>());
+
+	private final List<Future<Long>> deletions = new ArrayList<Future<Long>>();
+	private final long startTime = System.currentTimeMillis();
+
+	private CleanStart() {
+	}
+
+	/**
+	 * Renames directories of the server aside and starts their deletion in background.
+	 * Leftovers of the previous interrupted cleanups are deleted too, unless other cleanup is deleting them.
+	 *
+	 * @param server local server, must not be running
+	 * @param listener for logging purpose
+	 * @return the cleanup in progress
+	 */
+	public static CleanStart moveAside(ServerBean server, BuildListener listener) {
+		CleanStart cleanup = new CleanStart();
+		File serverDir = new File(server.getHomeDir(), "server/" + server.getServerName());
+
+		for (String name : DIRECTORIES) {
+			File dir = new File(serverDir, name);
+			if (!dir.exists()) {
+				continue;
+			}
+			File trash = new File(serverDir, name + TRASH_SUFFIX + cleanup.startTime);
+			if (!dir.renameTo(trash)) {
+				listener.getLogger().println("Clean start: unable to move aside " + dir);
+			}
+		}
+
+		File[] files = serverDir.listFiles();
+		if (files != null) {
+			for (final File trash : files) {
+				if (trash.isDirectory() && trash.getName().contains(TRASH_SUFFIX) && deleting.add(trash.getAbsoluteFile())) {
+					cleanup.deletions.add(deleters.submit(new Callable<Long>() {
+						public Long call() {
+							try {
+								return delete(trash);
+							} finally {
+								deleting.remove(trash.getAbsoluteFile());
+							}
+						}
+					}));
+				}
+			}
+		}
+
+		listener.getLogger().println(String.format("Clean start: %d directories moved aside, deleting in background.",
+				cleanup.deletions.size()));
+		return cleanup;
+	}
+
+	/**
+	 * Logs deletions finished so far without waiting for the others,
+	 * these are reported in background.
+	 *
+	 * @param listener for logging purpose
+	 */
+	public void report(BuildListener listener) {
+		long bytes = 0;
+		int pending = 0;
+		for (Future<Long> deletion : deletions) {
+			if (deletion.isDone()) {
+				bytes += reclaimed(deletion);
+			} else {
+				pending++;
+			}
+		}
+		listener.getLogger().println(String.format("Clean start: reclaimed %.1f MB in %.1f sec%s",
+				bytes / (1024.0 * 1024.0), (System.currentTimeMillis() - startTime) / 1000.0,
+				pending > 0 ? ", " + pending + " directories still deleting in background." : "."));
+		if (pending > 0) {
+			reportInBackground();
+		}
+	}
+
+	/**
+	 * Waits until deletion is finished.
+	 *
+	 * @return report with reclaimed bytes and deletion time
+	 */
+	private String awaitReport() throws InterruptedException {
+		long bytes = 0;
+		for (Future<Long> deletion : deletions) {
+			try {
+				bytes += deletion.get();
+			} catch (ExecutionException e) {
+				LOGGER.warning("Clean start: deletion failed: " + e.getCause());
+			}
+		}
+		return String.format("Clean start: reclaimed %.1f MB in %.1f sec.",
+				bytes / (1024.0 * 1024.0), (System.currentTimeMillis() - startTime) / 1000.0);
+	}
+
+	/**
+	 * Gets bytes reclaimed by finished deletion, does not block.
+	 */
+	private static long reclaimed(Future<Long> deletion) {
+		try {
+			return deletion.get();
+		} catch (ExecutionException e) {
+			LOGGER.warning("Clean start: deletion failed: " + e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt(); // not expected, deletion is done
+		}
+		return 0;
+	}
+
+	/**
+	 * Logs report when deletion is finished, used when the build is not waiting for it.
+	 */
+	public void reportInBackground() {
+		deleters.submit(new Callable<Void>() {
+			public Void call() throws InterruptedException {
+				LOGGER.info(awaitReport());
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Deletes file or directory recursively.
+	 *
+	 * @return number of reclaimed bytes, links reclaim nothing, their targets are kept
+	 */
+	static long delete(File file) {
+		long bytes = 0;
+		boolean link;
+		try {
+			link = Util.isSymlink(file);
+		} catch (IOException e) {
+			link = true; // not followed if unknown
+		}
+		File[] children = link ? null : file.listFiles(); // never follow links
+		if (children != null) {
+			for (File child : children) {
+				bytes += delete(child);
+			}
+		} else if (!link) {
+			bytes = file.length();
+		}
+		if (!file.delete()) {
+			LOGGER.fine("Clean start: unable to delete " + file);
+		}
+		return bytes;
+	}
+}
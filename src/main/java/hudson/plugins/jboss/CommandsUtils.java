@@ -2,6 +2,7 @@ package hudson.plugins.jboss;
 
 import hudson.EnvVars;
 import hudson.Launcher;
+import hudson.Launcher.ProcStarter;
 import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
@@ -35,10 +36,29 @@ public class CommandsUtils {
      * @param listener {@link BuildListener} for logging purpose
      * @return true if everything gone fine, false if any error occurred 
      */
-	@SuppressWarnings("unchecked")
 	public static boolean start(ServerBean server, String extraProperties,
 			AbstractBuild build, Launcher launcher,
 			BuildListener listener) throws IOException, InterruptedException {
+		ClassDataSharing cds = server.getKind() == 0 && server.isCds()
+				? new ClassDataSharing(server, build.getEnvironment(listener)) : null;
+		return start(server, extraProperties, build, launcher, listener, cds);
+	}
+
+    /**
+     * Starts given server with class-data-sharing archive.
+     * Method is not waiting.
+     * 
+     * @param server server to start
+     * @param extraProperties extra properties for run command
+     * @param launcher system command luncher
+     * @param listener {@link BuildListener} for logging purpose
+     * @param cds archive of the local server prepared for this start, null if not used
+     * @return true if everything gone fine, false if any error occurred 
+     */
+	@SuppressWarnings("unchecked")
+	public static boolean start(ServerBean server, String extraProperties,
+			AbstractBuild build, Launcher launcher,
+			BuildListener listener, ClassDataSharing cds) throws IOException, InterruptedException {
 		
 		int kindOfServer = server.getKind();
 		String startCommand;
@@ -68,6 +88,9 @@ public class CommandsUtils {
         String properties = env.expand(extraProperties);
         args.addKeyValuePairsFromPropertyString("-D",properties,vr);
 
+        RemoteCallStats stats = RemoteCallMetrics.of(ServerCoordinator.keyOf(server),
+        		RemoteCallMetrics.Call.LAUNCH_START);
+        long launchStart = System.nanoTime();
         try {
         	if(kindOfServer == 1){//remote case
 	        	launcher.launch()
@@ -75,19 +98,29 @@ public class CommandsUtils {
         				.stdout(new NullOutputStream())
         				.cmds(args)
         				.start();
+	        	stats.record(launchStart, false);
 	        	return true;
         	}
         	else{//local case
-        		launcher.launch()
+        		ProcStarter starter = launcher.launch()
 						.stderr(listener.getLogger())
 						.stdout(new NullOutputStream())
 						.cmds(args)
-		   				.pwd(server.getHomeDir() + "/bin")
-						.start();
+		   				.pwd(server.getHomeDir() + "/bin");
+        		if (cds != null) {
+        			String cdsOptions = cds.prepare(listener);
+        			if (cdsOptions != null) {
+        				// JAVA_OPTS reaches only the server JVM, not the java -version probe of run.sh
+        				starter.envs("JAVA_OPTS=" + cds.javaOpts(env, cdsOptions, launcher.isUnix()));
+        			}
+        		}
+        		starter.start();
+        		stats.record(launchStart, false);
         		return true;
         	}
            
         } catch (Exception e) {
+        	stats.record(launchStart, true);
         	if (e instanceof IOException) {
         		Util.displayIOException((IOException)e,listener);
         	}
@@ -129,6 +162,9 @@ public class CommandsUtils {
             args = args.toWindowsCommand();
         }
         
+        RemoteCallStats stats = RemoteCallMetrics.of(ServerCoordinator.keyOf(server),
+        		RemoteCallMetrics.Call.LAUNCH_STOP);
+        long launchStart = System.nanoTime();
         try {
         	if(kindOfServer == 1){//remote case
 	        	launcher.launch()
@@ -136,6 +172,7 @@ public class CommandsUtils {
 	    				.stdout(new NullOutputStream())
 	    				.cmds(args)
 	    				.join();
+	    		stats.record(launchStart, false);
 	            return true;
         	}
         	else{
@@ -145,9 +182,11 @@ public class CommandsUtils {
 						.cmds(args)
 		       			.pwd(server.getHomeDir() + "/bin")
 						.join();
+        		stats.record(launchStart, false);
         		return true;
         	}
         } catch (Exception e) {
+        	stats.record(launchStart, true);
         	if (e instanceof IOException) {
         		Util.displayIOException((IOException)e,listener);
         	}
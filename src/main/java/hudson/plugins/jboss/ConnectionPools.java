@@ -0,0 +1,154 @@
+package hudson.plugins.jboss;
+
+import hudson.model.BuildListener;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.Attribute;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Fills JCA connection pools (<code>jboss.jca:service=ManagedConnectionPool</code>) before the tests,
+ * so the first requests do not pay for opening of the connections.
+ *
+ * Minimum size of the pools is raised to the target, the pool is asked to prefill
+ * (servers with no <code>prefill</code> operation fill it by their pool filler)
+ * and the pools are polled until they hold the target number of connections.
+ * Attributes of each pool are read with single batched call.
+ */
+class ConnectionPools {
+
+	static final String POOLS = "jboss.jca:service=ManagedConnectionPool,*";
+
+	private static final String[] SIZE_ATTRIBUTES = {"MinSize", "MaxSize", "ConnectionCreatedCount"};
+	private static final String[] COUNT_ATTRIBUTES = {"ConnectionCount", "InUseConnectionCount", "ConnectionCreatedCount"};
+
+	private ConnectionPools() {
+		// utility class cannot be instantiated
+	}
+
+	/**
+	 * Prefills the pools and waits until they are filled.
+	 *
+	 * @param server MBean server connection
+	 * @param listener for logging purpose
+	 * @param timeout how long will we wait for the pools in seconds
+	 * @param minSize target number of connections, limited by maximal size of the pool
+	 * @param pools names of the pools, all pools if empty
+	 * @param targetDir directory where <code>jboss-pools.txt</code> is stored
+	 *
+	 * @return true if all pools have been filled before timeout
+	 *
+	 * @throws Exception on problems with remote calls
+	 */
+	static boolean prefill(MBeanServerConnection server, BuildListener listener,
+			int timeout, int minSize, String[] pools, File targetDir) throws Exception {
+
+		Map<String, ObjectName> selected = new TreeMap<String, ObjectName>();
+		for (ObjectName name : server.queryNames(new ObjectName(POOLS), null)) {
+			String poolName = name.getKeyProperty("name");
+			if (pools.length == 0 || contains(pools, poolName)) {
+				selected.put(poolName, name);
+			}
+		}
+		for (String poolName : pools) {
+			if (!selected.containsKey(poolName)) {
+				listener.error(String.format("Connection pool '%s' not found.", poolName));
+				return false;
+			}
+		}
+		if (selected.isEmpty()) {
+			listener.getLogger().println("No connection pools found.");
+			return true;
+		}
+
+		Map<String, Integer> targets = new HashMap<String, Integer>();
+		Map<String, Long> createdBefore = new HashMap<String, Long>();
+		// prefill operation may open the connections synchronously, so it is timed too
+		long startTime = System.currentTimeMillis();
+		for (Map.Entry<String, ObjectName> pool : selected.entrySet()) {
+			Map<String, Object> sizes = JMXUtils.getAttributes(server, pool.getValue(), SIZE_ATTRIBUTES);
+			int target = Math.min(minSize, toInt(sizes.get("MaxSize")));
+			if (toInt(sizes.get("MinSize")) < target) {
+				server.setAttribute(pool.getValue(), new Attribute("MinSize", Integer.valueOf(target)));
+			}
+			if (hasOperation(server, pool.getValue(), "prefill")) {
+				server.invoke(pool.getValue(), "prefill", null, null);
+			}
+			targets.put(pool.getKey(), target);
+			createdBefore.put(pool.getKey(), toLong(sizes.get("ConnectionCreatedCount")));
+		}
+		listener.getLogger().println(String.format("Prefilling %d connection pool(s) to %d connections with timeout %d seconds...",
+				selected.size(), minSize, timeout));
+
+		StringBuilder report = new StringBuilder();
+		Map<String, ObjectName> pending = new TreeMap<String, ObjectName>(selected);
+		while (true) {
+			for (Iterator<Map.Entry<String, ObjectName>> it = pending.entrySet().iterator(); it.hasNext();) {
+				Map.Entry<String, ObjectName> pool = it.next();
+				Map<String, Object> counts = JMXUtils.getAttributes(server, pool.getValue(), COUNT_ATTRIBUTES);
+				int connections = toInt(counts.get("ConnectionCount"));
+				if (connections < targets.get(pool.getKey())) {
+					continue;
+				}
+				it.remove();
+				long elapsed = System.currentTimeMillis() - startTime;
+				long created = toLong(counts.get("ConnectionCreatedCount")) - createdBefore.get(pool.getKey());
+				String line = String.format("%s: %d connection(s), %d in use, %d created in %.1f sec (%.1f ms per connection)",
+						pool.getKey(), connections, toInt(counts.get("InUseConnectionCount")), created,
+						elapsed / 1000.0, created > 0 ? (double) elapsed / created : 0.0);
+				report.append(line).append('\n');
+				listener.getLogger().println("Pool " + line);
+			}
+			if (pending.isEmpty() || System.currentTimeMillis() - startTime >= timeout * 1000L) {
+				break;
+			}
+			Thread.sleep(1000);
+		}
+
+		for (Map.Entry<String, ObjectName> pool : pending.entrySet()) {
+			Map<String, Object> counts = JMXUtils.getAttributes(server, pool.getValue(), COUNT_ATTRIBUTES);
+			String line = String.format("%s: %d of %d connection(s) after timeout (%d sec), FAILED",
+					pool.getKey(), toInt(counts.get("ConnectionCount")), targets.get(pool.getKey()), timeout);
+			report.append(line).append('\n');
+			listener.getLogger().println("Pool " + line);
+		}
+		FileUtils.writeStringToFile(new File(targetDir, "jboss-pools.txt"), report.toString());
+		return pending.isEmpty();
+	}
+
+	private static boolean hasOperation(MBeanServerConnection server, ObjectName name,
+			String operation) throws Exception {
+		for (MBeanOperationInfo info : server.getMBeanInfo(name).getOperations()) {
+			if (operation.equals(info.getName()) && info.getSignature().length == 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean contains(String[] values, String value) {
+		for (String v : values) {
+			if (v.equals(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int toInt(Object value) {
+		return value instanceof Number ? ((Number) value).intValue() : 0;
+	}
+
+	private static long toLong(Object value) {
+		return value instanceof Number ? ((Number) value).longValue() : 0;
+	}
+}
@@ -0,0 +1,27 @@
+package hudson.plugins.jboss;
+
+/**
+ * Enum defines types of management connectors supported by plugin.
+ * HTTP connector is available for remote servers only, local servers are started by <code>run.sh</code> of JBoss 4/5.
+ */
+public enum ConnectorEnum {
+
+    JNP("JNP/RMI (JBoss 4/5)", new JnpManagementConnector()),
+    HTTP("HTTP management (JBoss AS 7, WildFly)", new HttpManagementConnector());
+
+    private final String displayName;
+    private final ManagementConnector connector;
+
+    private ConnectorEnum(String displayName, ManagementConnector connector) {
+    	this.displayName = displayName;
+    	this.connector = connector;
+    }
+
+    public String getDisplayName() {
+    	return this.displayName;
+    }
+
+    public ManagementConnector getConnector() {
+    	return this.connector;
+    }
+}
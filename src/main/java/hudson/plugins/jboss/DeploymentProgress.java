@@ -0,0 +1,43 @@
+package hudson.plugins.jboss;
+
+import hudson.model.BuildListener;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Tracks modules awaited by WAIT_FOR_DEPLOY and reports time-to-started of each module.
+ */
+class DeploymentProgress extends TimedProgress {
+
+	private final Set<String> pending = new LinkedHashSet<String>();
+
+	DeploymentProgress(BuildListener listener, String[] modules) {
+		super(listener);
+		for (String moduleName : modules) {
+			pending.add(moduleName);
+		}
+	}
+
+	boolean isPending(String moduleName) {
+		return pending.contains(moduleName);
+	}
+
+	boolean isComplete() {
+		return pending.isEmpty();
+	}
+
+	void started(String moduleName) {
+		pending.remove(moduleName);
+		log("Module '%s' started after %.1f sec", moduleName, elapsed());
+	}
+
+	void failed(String moduleName) {
+		log("Module '%s' FAILED after %.1f sec", moduleName, elapsed());
+	}
+
+	@Override
+	void expired(int timeout) {
+		log("Modules not started before timeout (%d sec) has expired: %s", timeout, pending);
+	}
+}
@@ -0,0 +1,45 @@
+package hudson.plugins.jboss;
+
+import hudson.model.BuildListener;
+
+/**
+ * Tracks active sessions and requests awaited by the drain before SHUTDOWN,
+ * logs changes of the counts and duration of the drain.
+ */
+class DrainProgress extends TimedProgress {
+
+	private long sessions = -1;
+	private long requests = -1;
+
+	DrainProgress(BuildListener listener) {
+		super(listener);
+	}
+
+	/**
+	 * Records current counts.
+	 *
+	 * @param sessions active sessions of all web applications
+	 * @param requests requests in progress, negative if not known
+	 *
+	 * @return true if the server is drained
+	 */
+	boolean update(long sessions, long requests) {
+		if (sessions != this.sessions || requests != this.requests) {
+			log("Draining: %d active session(s), %s request(s) in progress after %.1f sec",
+					sessions, requests >= 0 ? String.valueOf(requests) : "n/a", elapsed());
+		}
+		this.sessions = sessions;
+		this.requests = requests;
+		return sessions == 0 && requests <= 0;
+	}
+
+	void drained() {
+		log("Server drained in %.1f sec", elapsed());
+	}
+
+	@Override
+	void expired(int timeout) {
+		log("Drain timeout (%d sec) has expired with %d active session(s) and %s request(s) in progress, shutting down anyway.",
+				timeout, sessions, requests >= 0 ? String.valueOf(requests) : "n/a");
+	}
+}
@@ -0,0 +1,498 @@
+package hudson.plugins.jboss;
+
+import hudson.Util;
+import hudson.model.BuildListener;
+import hudson.plugins.jboss.JBossBuilder.ServerBean;
+import hudson.util.Secret;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * {@link ManagementConnector} using JSON HTTP management API
+ * of the newer servers (JBoss AS 7, WildFly).
+ *
+ * Readiness and states of all deployments are read with single composite operation.
+ */
+public class HttpManagementConnector implements ManagementConnector {
+
+	public boolean checkServerStatus(ServerBean server,
+			BuildListener listener, int timeout, boolean ignoreErrors) {
+
+		IOException error = null;
+		long startTime = System.currentTimeMillis();
+		while (System.currentTimeMillis() - startTime < timeout * 1000L) {
+			try {
+				JSONObject response = execute(server, readAttribute(new JSONArray(), "server-state"), timeout);
+				if (isSuccess(response) && "running".equals(response.optString("result"))) {
+					return true;
+				}
+				error = null;
+			} catch (IOException e) {
+				error = e;
+			} catch (RemoteCallTimeoutException e) {
+				// same as JNP connector, errors of the ignoring caller are reported as server not started
+				if (ignoreErrors) {
+					return false;
+				}
+				throw e;
+			}
+			try {
+				Thread.sleep(1000);
+			} catch (InterruptedException e) {
+				listener.getLogger().println(
+						"Thread interrupted while waiting for server status: " + e.getMessage());
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		if (error != null && !(error instanceof ConnectException) && !ignoreErrors) {
+			throw new RuntimeException(new StringBuilder().append(
+					"Unable to get JBoss HTTP management connection ").append("in ")
+					.append(timeout).append(" seconds.").toString(), error);
+		}
+		return false;
+	}
+
+	public boolean checkDeploy(ServerBean server, BuildListener listener,
+			int timeout, String[] modules) {
+
+		listener.getLogger().println("Verification of deplyed modules started");
+
+		JSONArray steps = new JSONArray();
+		steps.add(readAttribute(new JSONArray(), "server-state"));
+		for (String moduleName : modules) {
+			steps.add(readAttribute(address("deployment", moduleName), "status"));
+		}
+
+		JSONObject response;
+		try {
+			response = execute(server, composite(steps), timeout);
+		} catch (IOException e) {
+			listener.error("Unable to verify deployment: " + e.getMessage());
+			return false;
+		}
+
+		JSONObject result = response.optJSONObject("result");
+		if (result == null) {
+			listener.error("Unable to verify deployment: " + response.optString("failure-description"));
+			return false;
+		}
+
+		JSONObject state = result.optJSONObject("step-1");
+		if (state == null || !isSuccess(state) || !"running".equals(state.optString("result"))) {
+			listener.error("Unable to verify deployment, server is not running: "
+					+ (state != null ? state.optString("result") : "n/a"));
+			return false;
+		}
+
+		boolean deployed = true;
+		for (int i = 0; i < modules.length; i++) {
+			JSONObject step = result.optJSONObject("step-" + (i + 2));
+			boolean ok = step != null && isSuccess(step) && "OK".equals(step.optString("result"));
+			listener.getLogger().println(
+					String.format("Verifying deployment of the module '%s' ... %s",
+							modules[i], ok?"SUCCESS":"FAILED"));
+			deployed &= ok;
+		}
+
+		listener.getLogger().println("Verification finished.");
+
+		return deployed;
+	}
+
+	public boolean waitForDeploy(ServerBean server, BuildListener listener,
+			int timeout, String[] modules) {
+
+		try {
+			JSONObject response = execute(server, operation("run-scan",
+					address("subsystem", "deployment-scanner", "scanner", "default")), 20);
+			if (isSuccess(response)) {
+				listener.getLogger().println("Deployment scan triggered.");
+			} else {
+				listener.getLogger().println("Unable to trigger deployment scan, waiting for the next scan period: "
+						+ response.optString("failure-description"));
+			}
+		} catch (IOException e) {
+			listener.getLogger().println(
+					"Unable to trigger deployment scan, waiting for the next scan period: " + e.getMessage());
+		}
+
+		JSONArray steps = new JSONArray();
+		for (String moduleName : modules) {
+			steps.add(readAttribute(address("deployment", moduleName), "status"));
+		}
+		JSONObject request = composite(steps);
+
+		DeploymentProgress progress = new DeploymentProgress(listener, modules);
+		while (true) {
+			JSONObject result;
+			try {
+				result = execute(server, request, timeout).optJSONObject("result");
+			} catch (IOException e) {
+				result = null;
+			}
+			if (result != null) {
+				for (int i = 0; i < modules.length; i++) {
+					JSONObject step = result.optJSONObject("step-" + (i + 1));
+					if (!progress.isPending(modules[i]) || step == null || !isSuccess(step)) {
+						continue;
+					}
+					String status = step.optString("result");
+					if ("OK".equals(status)) {
+						progress.started(modules[i]);
+					} else if ("FAILED".equals(status)) {
+						progress.failed(modules[i]);
+						return false;
+					}
+				}
+			}
+			if (progress.isComplete()) {
+				return true;
+			}
+			if (progress.isExpired(timeout)) {
+				progress.expired(timeout);
+				return false;
+			}
+			try {
+				Thread.sleep(1000);
+			} catch (InterruptedException e) {
+				listener.getLogger().println(
+						"Thread interrupted while waiting for deployment: " + e.getMessage());
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+	}
+
+	public boolean shutdown(ServerBean server, BuildListener listener) {
+		try {
+			JSONObject response = execute(server, operation("shutdown", new JSONArray()), 20);
+			if (!isSuccess(response)) {
+				listener.error("Unable to shutdown server: " + response.optString("failure-description"));
+				return false;
+			}
+			return true;
+		} catch (IOException e) {
+			listener.error("Unable to shutdown server: " + e.getMessage());
+			return false;
+		}
+	}
+
+	public boolean drain(ServerBean server, BuildListener listener, int timeout) {
+		// requests in progress are not exposed by the management API, only sessions are awaited
+		JSONObject request = readAttribute(address("deployment", "*", "subsystem", "undertow"), "active-sessions");
+
+		DrainProgress progress = new DrainProgress(listener);
+		while (true) {
+			try {
+				JSONObject response = execute(server, request, 20);
+				if (!isSuccess(response)) {
+					listener.getLogger().println("Unable to drain server, shutting down immediately: "
+							+ response.optString("failure-description"));
+					return false;
+				}
+				long sessions = 0;
+				JSONArray results = response.optJSONArray("result");
+				for (int i = 0; results != null && i < results.size(); i++) {
+					JSONObject result = results.optJSONObject(i);
+					if (result != null && isSuccess(result)) {
+						sessions += result.optLong("result");
+					}
+				}
+				if (progress.update(sessions, -1)) {
+					progress.drained();
+					return true;
+				}
+			} catch (IOException e) {
+				listener.getLogger().println("Unable to drain server, shutting down immediately: " + e.getMessage());
+				return false;
+			}
+			if (progress.isExpired(timeout)) {
+				progress.expired(timeout);
+				return false;
+			}
+			try {
+				Thread.sleep(1000);
+			} catch (InterruptedException e) {
+				listener.getLogger().println(
+						"Thread interrupted while draining server: " + e.getMessage());
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+	}
+
+	public int collectDiagnostics(ServerBean server, BuildListener listener,
+			File targetDir, int dumps, int interval) {
+
+		if (dumps <= 0) {
+			return 0;
+		}
+
+		listener.getLogger().println(
+				String.format("Collecting %d thread dump(s) every %d seconds...", dumps, interval));
+
+		JSONObject threadDump = operation("dump-all-threads",
+				address("core-service", "platform-mbean", "type", "threading"));
+		threadDump.element("locked-monitors", true);
+		threadDump.element("locked-synchronizers", true);
+		JSONObject heapUsage = readAttribute(
+				address("core-service", "platform-mbean", "type", "memory"), "heap-memory-usage");
+
+		StringBuilder memory = new StringBuilder();
+		int collected = 0;
+		for (int i = 1; i <= dumps; i++) {
+			try {
+				JSONObject dumpResponse = execute(server, threadDump, 20);
+				if (!isSuccess(dumpResponse)) {
+					listener.getLogger().println("Unable to collect diagnostics: "
+							+ dumpResponse.optString("failure-description"));
+					break;
+				}
+				File dumpFile = new File(targetDir, "jboss-threaddump-" + i + ".json");
+				FileUtils.writeStringToFile(dumpFile, dumpResponse.optString("result"));
+
+				JSONObject heap = execute(server, heapUsage, 20).optJSONObject("result");
+				String memoryLine = heap == null ? "n/a" : String.format("#%d used=%d MB, committed=%d MB, max=%d MB",
+						i,
+						heap.optLong("used") / (1024 * 1024),
+						heap.optLong("committed") / (1024 * 1024),
+						heap.optLong("max") / (1024 * 1024));
+				memory.append(memoryLine).append('\n');
+
+				listener.getLogger().println(
+						String.format("Thread dump stored in '%s', memory %s", dumpFile.getName(), memoryLine));
+				collected++;
+			} catch (IOException e) {
+				listener.getLogger().println("Unable to collect diagnostics: " + e.getMessage());
+				break;
+			}
+
+			if (i < dumps) {
+				try {
+					Thread.sleep(interval * 1000L);
+				} catch (InterruptedException e) {
+					listener.getLogger().println(
+							"Thread interrupted while collecting diagnostics: " + e.getMessage());
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+
+		if (memory.length() > 0) {
+			try {
+				FileUtils.writeStringToFile(new File(targetDir, "jboss-memory.txt"), memory.toString());
+			} catch (IOException e) {
+				listener.getLogger().println("Unable to store memory statistics: " + e.getMessage());
+			}
+		}
+		return collected;
+	}
+
+	public boolean prefillPools(ServerBean server, BuildListener listener,
+			int timeout, int minSize, String[] pools, File targetDir) {
+		// JCA pool MBeans are not exposed by the HTTP management API
+		listener.error("Prefill of connection pools is supported only by " + ConnectorEnum.JNP.getDisplayName() + " connector.");
+		return false;
+	}
+
+	/**
+	 * Gets URL of the management endpoint of given server.
+	 *
+	 * @param server the server
+	 * @return management URL, e.g. <code>http://127.0.0.1:9990/management</code>
+	 */
+	protected String getManagementUrl(ServerBean server) {
+		return "http://" + server.getAddress() + ":" + server.getManagementPort() + "/management";
+	}
+
+	/**
+	 * Executes single management operation.
+	 * Operation is cancelled if the calling thread is interrupted.
+	 *
+	 * @param server the server
+	 * @param operation operation in DMR JSON format
+	 * @param timeout connect and read timeout in seconds, limited by {@link RemoteCalls} deadlines
+	 *
+	 * @return response of the server, failed operations are returned too
+	 *
+	 * @throws IOException if communication failed
+	 * @throws RemoteCallTimeoutException if operation did not finish before deadline
+	 */
+	protected JSONObject execute(final ServerBean server, final JSONObject operation, final int timeout)
+			throws IOException {
+		final int connectTimeout = Math.min(timeout, RemoteCalls.CONNECT_TIMEOUT);
+		final int readTimeout = Math.min(timeout, RemoteCalls.READ_TIMEOUT);
+		try {
+			return RemoteCalls.call(new Callable<JSONObject>() {
+				public JSONObject call() throws IOException {
+					return post(server, operation, connectTimeout, readTimeout);
+				}
+			}, connectTimeout + readTimeout + 1,
+			operation.optString("operation") + " on " + getManagementUrl(server));
+		} catch (IOException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("HTTP management operation interrupted");
+		} catch (Exception e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	private JSONObject post(ServerBean server, JSONObject operation, int connectTimeout, int readTimeout)
+			throws IOException {
+
+		RemoteCallStats stats = RemoteCallMetrics.of(ServerCoordinator.keyOf(server),
+				RemoteCallMetrics.Call.HTTP_MANAGEMENT);
+		long start = System.nanoTime();
+		boolean failed = true;
+		URL url = new URL(getManagementUrl(server));
+		byte[] request = operation.toString().getBytes("UTF-8");
+		HttpURLConnection connection = send(url, request, connectTimeout, readTimeout, null);
+		try {
+			int code = connection.getResponseCode();
+			String user = Util.fixEmpty(server.getManagementUser());
+			if (code == HttpURLConnection.HTTP_UNAUTHORIZED && user != null) {
+				// challenge is answered on the connection, default authenticator of the JVM belongs to Jenkins
+				String authorization = ManagementAuthenticator.authorization(
+						challenges(connection), "POST", url.getPath(),
+						user, Secret.toString(server.getManagementPassword()));
+				if (authorization != null) {
+					connection.disconnect();
+					connection = send(url, request, connectTimeout, readTimeout, authorization);
+					code = connection.getResponseCode();
+				}
+			}
+			if (code == HttpURLConnection.HTTP_UNAUTHORIZED || code == HttpURLConnection.HTTP_FORBIDDEN) {
+				throw new IOException("Management endpoint returned HTTP " + code
+						+ ", check management user and password of the server.");
+			}
+			InputStream in = code >= 400 ? connection.getErrorStream() : connection.getInputStream();
+			if (in == null) {
+				throw new IOException("Management endpoint returned HTTP " + code);
+			}
+			String body;
+			try {
+				body = IOUtils.toString(in, "UTF-8");
+			} finally {
+				IOUtils.closeQuietly(in);
+			}
+
+			// failed operations are answered with HTTP 500 and JSON outcome, anything else is not from the server
+			JSONObject response;
+			try {
+				response = JSONObject.fromObject(body);
+			} catch (JSONException e) {
+				throw new IOException("Management endpoint returned HTTP " + code + " with no JSON response.");
+			}
+			if (response.isNullObject() || !response.has("outcome")) {
+				throw new IOException("Management endpoint returned HTTP " + code + " with no management response.");
+			}
+			failed = false;
+			return response;
+		} finally {
+			connection.disconnect();
+			stats.record(start, failed);
+		}
+	}
+
+	/**
+	 * Gets <code>WWW-Authenticate</code> headers of the response, names of the headers are case insensitive.
+	 */
+	private static List<String> challenges(HttpURLConnection connection) {
+		List<String> challenges = new ArrayList<String>();
+		for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+			if ("WWW-Authenticate".equalsIgnoreCase(header.getKey())) {
+				challenges.addAll(header.getValue());
+			}
+		}
+		return challenges;
+	}
+
+	/**
+	 * Posts the request, response is not read.
+	 *
+	 * @param authorization value of <code>Authorization</code> header, may be null
+	 */
+	private static HttpURLConnection send(URL url, byte[] request, int connectTimeout, int readTimeout,
+			String authorization) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setConnectTimeout(connectTimeout * 1000);
+		connection.setReadTimeout(readTimeout * 1000);
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setRequestProperty("Content-Type", "application/json");
+		connection.setRequestProperty("Accept", "application/json");
+		if (authorization != null) {
+			connection.setRequestProperty("Authorization", authorization);
+		}
+
+		try {
+			OutputStream out = connection.getOutputStream();
+			try {
+				out.write(request);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			connection.disconnect();
+			throw e;
+		}
+		return connection;
+	}
+
+	private static boolean isSuccess(JSONObject response) {
+		return "success".equals(response.optString("outcome"));
+	}
+
+	private static JSONObject operation(String name, JSONArray address) {
+		JSONObject operation = new JSONObject();
+		operation.element("operation", name);
+		operation.element("address", address);
+		return operation;
+	}
+
+	private static JSONObject readAttribute(JSONArray address, String attribute) {
+		return operation("read-attribute", address).element("name", attribute);
+	}
+
+	private static JSONObject composite(JSONArray steps) {
+		return operation("composite", new JSONArray()).element("steps", steps);
+	}
+
+	/**
+	 * Builds resource address from type/name pairs.
+	 */
+	private static JSONArray address(String... pairs) {
+		JSONArray address = new JSONArray();
+		for (int i = 0; i + 1 < pairs.length; i += 2) {
+			JSONObject element = new JSONObject();
+			element.element(pairs[i], pairs[i + 1]);
+			address.add(element);
+		}
+		return address;
+	}
+}
@@ -2,7 +2,13 @@ package hudson.plugins.jboss;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.servlet.ServletException;
 
 import hudson.CopyOnWrite;
@@ -14,11 +20,14 @@ import hudson.model.AbstractProject;
 import hudson.model.BuildListener;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.FormValidation;
+import hudson.util.Secret;
 
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 
+import org.apache.commons.io.FileUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
@@ -53,10 +62,10 @@ public class JBossBuilder extends Builder {
     }
     
 	@Override
-	public boolean perform(AbstractBuild build, Launcher launcher,
-			BuildListener listener) throws IOException, InterruptedException {    	
+	public boolean perform(final AbstractBuild build, final Launcher launcher,
+			final BuildListener listener) throws IOException, InterruptedException {    	
     	
-		ServerBean server = getDescriptor().findServer(serverName);
+		final ServerBean server = getDescriptor().findServer(serverName);
 		
     	if (server == null || operation == null) {
     		listener.fatalError("Wrong configuration of the plugin. Step error.");
@@ -64,79 +73,366 @@ public class JBossBuilder extends Builder {
     	}
 
     	ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader(); 
-    	Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+    	Thread.currentThread().setContextClassLoader(server.getConnectorType() == ConnectorEnum.JNP
+    			? JBossClient.getClassLoader(listener) : getClass().getClassLoader());
     	try {
-    		
-	    	switch (operation.getType()) {
-	    	
-	    		case START_AND_WAIT:
-		    		listener.getLogger().println("START_AND_WAIT: Checking if server is already running (max 20 seconds)...");
-	    			if (JMXUtils.checkServerStatus(server.getAddress(), server.getJndiPort(), listener, 20, false)) {
-	    				listener.getLogger().println("START_AND_WAIT: JBoss AS already started.");
-	    				return true;
-	    			}
-	    			listener.getLogger().println("START_AND_WAIT: Going to start server with timeout " + server.getTimeout() + " seconds...");
-	    			long startJbossServerTime;
-	    			startJbossServerTime = System.currentTimeMillis();
-	    			boolean ret = CommandsUtils.start(server,
-						operation.getProperties(), build, launcher, listener)
-						&& JMXUtils.checkServerStatus(server.getAddress(), server.getJndiPort(),
-								listener, server.getTimeout(), false);
-	    			startJbossServerTime = System.currentTimeMillis() - startJbossServerTime;
-	    			if (ret) {
-	        			listener.getLogger().println("START_AND_WAIT: JBoss AS started for " + startJbossServerTime/1000.0 + " sec !");
-	    			} else {
-	        			listener.getLogger().println(
-	        					String.format("START_AND_WAIT: JBoss AS is not started before timeout (%d sec) has expired!",
-	        								server.getTimeout()));
-	    			}
-	    			return ret;
-	    			
-	    		case START:
-		    		listener.getLogger().println("START: Checking if server is already running (max 20 seconds)...");
-				if (JMXUtils.checkServerStatus(server.getAddress(), server.getJndiPort(), listener, 20, false)) {
-		    			listener.getLogger().println("START: JBoss AS already started.");
-		    			return true;
-		    		}
-	    			listener.getLogger().println("START: Going to trigger start server...");
-	    			return CommandsUtils.start(server, operation.getProperties(), build, launcher, listener);
-
-	    		case SHUTDOWN:
-		    		listener.getLogger().println("SHUTDOWN: Checking if server is running (max 20 seconds)...");
-	    			if (!JMXUtils.checkServerStatus(server.getAddress(), server.getJndiPort(), listener, 20, false)) {
-	    				listener.getLogger().println("SHUTDOWN: JBoss AS is not working.");
-	    				return true;
-	    			}
-	    			return CommandsUtils.stop(server, launcher, listener);
-
-	    		case CHECK_DEPLOY:
-		    		listener.getLogger().println("CHECK_DEPLOY: Checking if server is running (max 20 seconds)...");
-	    			if(!JMXUtils.checkServerStatus(server.getAddress(), server.getJndiPort(), listener, 20, false)){
-	    				listener.getLogger().println("CHECK_DEPLOY: JBoss AS is not working.");
-	    				return false;
-	    			}
-	    			boolean result = false;
-	    			if (Util.fixEmpty(operation.getProperties()) != null) {
-	    				String[] modules = Util.tokenize(operation.getProperties());
-	    				result = JMXUtils.checkDeploy(server.getAddress(), server.getJndiPort(), listener, 20, modules);
-	    			} else {
-	    				listener.getLogger().println("CHECK_DEPLOY: No modules provided.");
-	    				result = true;
-	    			}
-	    			if (!result && operation.isStopOnFailure()) {
-	    				listener.getLogger().println("CHECK_DEPLOY: StopOnFailure flag is set, going to down server...");
-	    				CommandsUtils.stop(server, launcher, listener);
-	    			}
-	    			return result;
-	    		default:
-	    			listener.fatalError("Uexpected type of operation.");
-	    			return false;
-	    	}
+    		boolean result = performOperation(server, build, launcher, listener);
+    		if (Thread.interrupted()) {
+    			throw new InterruptedException("JBoss operation interrupted.");
+    		}
+    		return result;
+    	} catch (RemoteCallTimeoutException e) {
+    		listener.error(operation.getType() + ": " + e.getMessage());
+    		return false;
     	} finally {
         	Thread.currentThread().setContextClassLoader(contextClassLoader);
+        	JBossReportsAction.attach(build);
+    	}
+    }
+
+	/**
+	 * Performs configured operation on the server.
+	 */
+	private boolean performOperation(final ServerBean server, final AbstractBuild build,
+			final Launcher launcher, final BuildListener listener) throws IOException, InterruptedException {
+
+    	ServerCoordinator coordinator = ServerCoordinator.forServer(server);
+    	switch (operation.getType()) {
+    	
+    		case START_AND_WAIT:
+    			Boolean started = coordinator.start(true, new Callable<Boolean>() {
+    				public Boolean call() throws Exception {
+    					return startAndWait(server, operation.getProperties(), build, launcher, listener);
+    				}
+    			}, listener);
+    			if (started == null) {
+    				listener.getLogger().println("START_AND_WAIT: Waiting for server started by another build with timeout " + server.getTimeout() + " seconds...");
+    				started = server.getConnector().checkServerStatus(server, listener, server.getTimeout(), false);
+    			}
+    			return started;
+    			
+    		case START:
+    			return coordinator.start(false, new Callable<Boolean>() {
+    				public Boolean call() throws Exception {
+    					return start(server, build, launcher, listener);
+    				}
+    			}, listener);
+
+    		case SHUTDOWN:
+    			// checked under the lock, so start in progress by another build is not taken for stopped server
+    			return coordinator.stop(new Callable<Boolean>() {
+    				public Boolean call() {
+    					return shutdown(server, launcher, listener);
+    				}
+    			}, listener);
+
+    		case CHECK_DEPLOY:
+	    		listener.getLogger().println("CHECK_DEPLOY: Checking if server is running (max 20 seconds)...");
+    			if(!server.getConnector().checkServerStatus(server, listener, 20, false)){
+    				listener.getLogger().println("CHECK_DEPLOY: JBoss AS is not working.");
+    				return false;
+    			}
+    			boolean result = false;
+    			if (Util.fixEmpty(operation.getProperties()) != null) {
+    				String[] modules = Util.tokenize(operation.getProperties());
+    				result = server.getConnector().checkDeploy(server, listener, 20, modules);
+    			} else {
+    				listener.getLogger().println("CHECK_DEPLOY: No modules provided.");
+    				result = true;
+    			}
+    			if (!result && operation.isStopOnFailure()) {
+    				listener.getLogger().println("CHECK_DEPLOY: StopOnFailure flag is set, going to down server...");
+    				stop(server, launcher, listener);
+    			}
+    			return result;
+
+    		case WAIT_FOR_DEPLOY:
+	    		listener.getLogger().println("WAIT_FOR_DEPLOY: Checking if server is running (max 20 seconds)...");
+    			if(!server.getConnector().checkServerStatus(server, listener, 20, false)){
+    				listener.getLogger().println("WAIT_FOR_DEPLOY: JBoss AS is not working.");
+    				return false;
+    			}
+    			if (Util.fixEmpty(operation.getProperties()) == null) {
+    				listener.getLogger().println("WAIT_FOR_DEPLOY: No modules provided.");
+    				return true;
+    			}
+    			listener.getLogger().println("WAIT_FOR_DEPLOY: Waiting for deployment with timeout " + server.getTimeout() + " seconds...");
+    			boolean deployed = server.getConnector().waitForDeploy(server, listener,
+    					server.getTimeout(), Util.tokenize(operation.getProperties()));
+    			if (!deployed && operation.isStopOnFailure()) {
+    				listener.getLogger().println("WAIT_FOR_DEPLOY: StopOnFailure flag is set, going to down server...");
+    				stop(server, launcher, listener);
+    			}
+    			return deployed;
+
+    		case ROLLING_RESTART:
+    			return rollingRestart(server, build, launcher, listener);
+
+    		case PREFILL_POOLS:
+	    		listener.getLogger().println("PREFILL_POOLS: Checking if server is running (max 20 seconds)...");
+    			if(!server.getConnector().checkServerStatus(server, listener, 20, false)){
+    				listener.getLogger().println("PREFILL_POOLS: JBoss AS is not working.");
+    				return false;
+    			}
+    			String[] pools = Util.fixEmpty(operation.getProperties()) != null
+    					? Util.tokenize(operation.getProperties()) : new String[0];
+    			return server.getConnector().prefillPools(server, listener, server.getTimeout(),
+    					operation.getPoolSize(), pools, build.getRootDir());
+
+    		case START_MONITORING:
+    			if (server.getConnectorType() != ConnectorEnum.JNP) {
+    				listener.error("START_MONITORING: Runtime metrics are sampled only by "
+    						+ ConnectorEnum.JNP.getDisplayName() + " connector.");
+    				return false;
+    			}
+    			RuntimeSampler.start(build, server, operation.getSampleInterval(), listener);
+    			return true;
+
+    		default:
+    			listener.fatalError("Uexpected type of operation.");
+    			return false;
     	}
     }
 
+	/**
+	 * Starts the server and waits until it is up.
+	 * Thread dumps are collected if the server did not start before timeout.
+	 *
+	 * @param properties extra properties passed to the start command, may be null
+	 */
+	private boolean startAndWait(ServerBean server, String properties, AbstractBuild build, Launcher launcher,
+			BuildListener listener) throws IOException, InterruptedException {
+		listener.getLogger().println("START_AND_WAIT: Checking if server is already running (max 20 seconds)...");
+		if (server.getConnector().checkServerStatus(server, listener, 20, false)) {
+			listener.getLogger().println("START_AND_WAIT: JBoss AS already started.");
+			return true;
+		}
+		listener.getLogger().println("START_AND_WAIT: Going to start server with timeout " + server.getTimeout() + " seconds...");
+		long startJbossServerTime;
+		startJbossServerTime = System.currentTimeMillis();
+		CleanStart cleanup = cleanStart(server, listener);
+		ClassDataSharing cds = server.getKind() == 0 && server.isCds()
+				? new ClassDataSharing(server, build.getEnvironment(listener)) : null;
+		boolean ret = CommandsUtils.start(server,
+			properties, build, launcher, listener, cds)
+			&& server.getConnector().checkServerStatus(server,
+					listener, server.getTimeout(), false);
+		startJbossServerTime = System.currentTimeMillis() - startJbossServerTime;
+		if (cleanup != null) {
+			cleanup.report(listener);
+		}
+		if (ret) {
+			listener.getLogger().println("START_AND_WAIT: JBoss AS started for " + startJbossServerTime/1000.0 + " sec !");
+			if (cds != null) {
+				cds.recordStartupTime(startJbossServerTime, listener);
+			}
+		} else {
+			listener.getLogger().println(
+					String.format("START_AND_WAIT: JBoss AS is not started before timeout (%d sec) has expired!",
+								server.getTimeout()));
+			server.getConnector().collectDiagnostics(server, listener,
+					build.getRootDir(), operation.getThreadDumps(), operation.getThreadDumpInterval());
+		}
+		return ret;
+	}
+
+	/**
+	 * Starts the server, method is not waiting.
+	 */
+	private boolean start(ServerBean server, AbstractBuild build, Launcher launcher,
+			BuildListener listener) throws IOException, InterruptedException {
+		listener.getLogger().println("START: Checking if server is already running (max 20 seconds)...");
+		if (server.getConnector().checkServerStatus(server, listener, 20, false)) {
+			listener.getLogger().println("START: JBoss AS already started.");
+			return true;
+		}
+		listener.getLogger().println("START: Going to trigger start server...");
+		CleanStart cleanup = cleanStart(server, listener);
+		if (cleanup != null) {
+			// START does not wait for the server, deletions not finished yet are reported in background
+			cleanup.report(listener);
+		}
+		return CommandsUtils.start(server, operation.getProperties(), build, launcher, listener);
+	}
+
+	/**
+	 * Moves aside tmp, work and data directories of the local server if clean start is requested.
+	 *
+	 * @return cleanup in progress, or null if not requested
+	 */
+	private CleanStart cleanStart(ServerBean server, BuildListener listener) {
+		if (!operation.isCleanStart()) {
+			return null;
+		}
+		if (server.getKind() != 0) {
+			listener.getLogger().println("Clean start is supported only for local servers, ignored.");
+			return null;
+		}
+		return CleanStart.moveAside(server, listener);
+	}
+
+	/**
+	 * Drains and stops the server if it is running, caller must hold the lifecycle lock of the server.
+	 */
+	private boolean shutdown(ServerBean server, Launcher launcher, BuildListener listener) {
+		listener.getLogger().println("SHUTDOWN: Checking if server is running (max 20 seconds)...");
+		if (!server.getConnector().checkServerStatus(server, listener, 20, false)) {
+			listener.getLogger().println("SHUTDOWN: JBoss AS is not working.");
+			return true;
+		}
+		if (operation.getDrainTimeout() > 0) {
+			listener.getLogger().println("SHUTDOWN: Draining sessions and requests with timeout " + operation.getDrainTimeout() + " seconds...");
+			server.getConnector().drain(server, listener, operation.getDrainTimeout());
+		}
+		return CommandsUtils.stop(server, launcher, listener);
+	}
+
+	/**
+	 * Stops the server, waits for start or stop in progress by another build.
+	 */
+	private boolean stop(final ServerBean server, final Launcher launcher,
+			final BuildListener listener) throws IOException, InterruptedException {
+		return ServerCoordinator.forServer(server).stop(new Callable<Boolean>() {
+			public Boolean call() {
+				return CommandsUtils.stop(server, launcher, listener);
+			}
+		}, listener);
+	}
+
+	/**
+	 * Restarts the group of servers, given number of servers at a time.
+	 * Each server of the batch is stopped, started and its modules are verified
+	 * before the next batch is touched, the roll is aborted on the first failed batch.
+	 * Timing of the servers is written to <code>jboss-rolling-restart.txt</code> in the build directory.
+	 */
+	private boolean rollingRestart(ServerBean server, final AbstractBuild build, final Launcher launcher,
+			final BuildListener listener) throws IOException, InterruptedException {
+		List<ServerBean> group = new ArrayList<ServerBean>();
+		if (operation.getServers() == null) {
+			group.add(server);
+		} else {
+			for (String name : Util.tokenize(operation.getServers(), ", \t\r\n")) {
+				ServerBean node = getDescriptor().findServer(name);
+				if (node == null) {
+					listener.fatalError("ROLLING_RESTART: Server '" + name + "' is not configured.");
+					return false;
+				}
+				group.add(node);
+			}
+		}
+		final String[] modules = Util.fixEmpty(operation.getProperties()) != null
+				? Util.tokenize(operation.getProperties()) : new String[0];
+		int batchSize = Math.min(operation.getBatchSize(), group.size());
+		listener.getLogger().println(String.format("ROLLING_RESTART: Restarting %d server(s), %d at a time...",
+				group.size(), batchSize));
+
+		final List<String> report = Collections.synchronizedList(new ArrayList<String>());
+		long rollTime = System.currentTimeMillis();
+		boolean result = true;
+		ExecutorService executor = Executors.newFixedThreadPool(batchSize, new DaemonThreadFactory());
+		try {
+			for (int i = 0; i < group.size() && result; i += batchSize) {
+				List<Future<Boolean>> batch = new ArrayList<Future<Boolean>>();
+				for (final ServerBean node : group.subList(i, Math.min(i + batchSize, group.size()))) {
+					batch.add(executor.submit(new Callable<Boolean>() {
+						public Boolean call() throws Exception {
+							return restartNode(node, modules, build, launcher, listener, report);
+						}
+					}));
+				}
+				for (Future<Boolean> future : batch) {
+					try {
+						result &= future.get();
+					} catch (ExecutionException e) {
+						Throwable cause = e.getCause();
+						if (cause instanceof RemoteCallTimeoutException) {
+							listener.error("ROLLING_RESTART: " + cause.getMessage());
+						} else {
+							cause.printStackTrace(listener.error("ROLLING_RESTART: Restart of the server failed."));
+						}
+						result = false;
+					}
+				}
+				if (!result && i + batchSize < group.size()) {
+					listener.getLogger().println("ROLLING_RESTART: Batch failed, remaining servers are not restarted.");
+				}
+			}
+		} finally {
+			// cancels the batch in progress if the build was aborted
+			executor.shutdownNow();
+		}
+		rollTime = System.currentTimeMillis() - rollTime;
+
+		StringBuilder summary = new StringBuilder();
+		for (String line : report) {
+			summary.append(line).append('\n');
+		}
+		summary.append(String.format("Total: %.1f sec, %s%n", rollTime / 1000.0, result ? "SUCCESS" : "FAILED"));
+		listener.getLogger().println("ROLLING_RESTART: Summary");
+		listener.getLogger().print(summary);
+		FileUtils.writeStringToFile(new File(build.getRootDir(), "jboss-rolling-restart.txt"), summary.toString());
+		return result;
+	}
+
+	/**
+	 * Stops, starts and verifies single server of the rolling restart.
+	 * Called by worker thread, so the class loader of the server connector is set here.
+	 */
+	private boolean restartNode(final ServerBean node, String[] modules, final AbstractBuild build,
+			final Launcher launcher, final BuildListener listener, List<String> report)
+				throws IOException, InterruptedException {
+		String name = node.getServerName();
+		Thread.currentThread().setContextClassLoader(node.getConnectorType() == ConnectorEnum.JNP
+				? JBossClient.getClassLoader(listener) : getClass().getClassLoader());
+		long stopTime = System.currentTimeMillis();
+		listener.getLogger().println("ROLLING_RESTART: [" + name + "] Stopping server...");
+		if (node.getConnector().checkServerStatus(node, listener, 20, true)
+				&& !(stop(node, launcher, listener) && waitForShutdown(node, listener))) {
+			report.add(String.format("%s: not stopped before timeout (%d sec), FAILED", name, node.getTimeout()));
+			return false;
+		}
+		stopTime = System.currentTimeMillis() - stopTime;
+
+		long startTime = System.currentTimeMillis();
+		listener.getLogger().println("ROLLING_RESTART: [" + name + "] Starting server...");
+		Boolean started = ServerCoordinator.forServer(node).start(true, new Callable<Boolean>() {
+			public Boolean call() throws Exception {
+				return startAndWait(node, null, build, launcher, listener);
+			}
+		}, listener);
+		if (started == null) {
+			started = node.getConnector().checkServerStatus(node, listener, node.getTimeout(), false);
+		}
+		startTime = System.currentTimeMillis() - startTime;
+		if (!started) {
+			report.add(String.format("%s: stop %.1f sec, not started before timeout (%d sec), FAILED",
+					name, stopTime / 1000.0, node.getTimeout()));
+			return false;
+		}
+
+		long verifyTime = System.currentTimeMillis();
+		boolean deployed = modules.length == 0 || node.getConnector().checkDeploy(node, listener, 20, modules);
+		verifyTime = System.currentTimeMillis() - verifyTime;
+		report.add(String.format("%s: stop %.1f sec, start %.1f sec, verify %.1f sec, total %.1f sec, %s",
+				name, stopTime / 1000.0, startTime / 1000.0, verifyTime / 1000.0,
+				(stopTime + startTime + verifyTime) / 1000.0, deployed ? "SUCCESS" : "FAILED"));
+		return deployed;
+	}
+
+	/**
+	 * Waits until the server does not respond, with timeout of the server.
+	 */
+	private boolean waitForShutdown(ServerBean server, BuildListener listener) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + server.getTimeout() * 1000L;
+		while (server.getConnector().checkServerStatus(server, listener, 5, true)) {
+			if (System.currentTimeMillis() > deadline) {
+				return false;
+			}
+			Thread.sleep(1000);
+		}
+		return true;
+	}
+
     @Override
     public DescriptorImpl getDescriptor() {
         return (DescriptorImpl)super.getDescriptor();
@@ -194,12 +490,29 @@ public class JBossBuilder extends Builder {
         }
     
 		public FormValidation doCheckAddress(
+				@QueryParameter final String value, @QueryParameter final String connector)
+					throws IOException,	ServletException {
+        	
+            if(value == null || value.length() == 0) { 
+                return FormValidation.error("Please set IP address of JBoss server.");
+            }
+            if (JndiEndpoints.isCluster(value) && ConnectorEnum.HTTP.name().equals(connector)) {
+            	return FormValidation.error("List of HA-JNDI endpoints is supported only by "
+            			+ ConnectorEnum.JNP.getDisplayName() + " connector.");
+            }
+            return FormValidation.ok();
+        }
+
+		public FormValidation doCheckBindAddress(
 				@QueryParameter final String value)
 					throws IOException,	ServletException {
         	
             if(value == null || value.length() == 0) { 
                 return FormValidation.error("Please set IP address of JBoss server.");
             }
+            if (JndiEndpoints.isCluster(value)) {
+            	return FormValidation.error("Local server is bound to single address, list of endpoints is supported only for remote servers.");
+            }
             return FormValidation.ok();
         }
             
@@ -297,50 +610,12 @@ public class JBossBuilder extends Builder {
         	
             JSONObject optServersObject = parameters.optJSONObject("servers");
             if (optServersObject != null) {
-            	JSONObject serverObject = (JSONObject) (optServersObject.optJSONObject("CurrentServer"));
-            	if(serverObject.getString("value").equals("option_1") == true){//remote case
-            		servers.add(new ServerBean(
-            			serverObject.getString("cmdToStart"),
-            			serverObject.getString("cmdToShutdown"),
-            			serverObject.getString("address"),
-            			serverObject.getString("serverName"),
-            			serverObject.getInt("jndiPort"),
-            			serverObject.getInt("timeout"),
-            			1));
-            	}
-            	else{//local case
-            		servers.add(new ServerBean(
-                			serverObject.getString("serverName"),
-                			serverObject.getString("homeDir"),
-                			serverObject.getInt("jndiPort"),
-							serverObject.getString("address"),
-                			serverObject.getInt("timeout"),
-                			0));
-            	}
+            	servers.add(createServer(optServersObject.optJSONObject("CurrentServer")));
             } else {
             	JSONArray optServersArray = parameters.optJSONArray("servers");
             	if (optServersArray != null) {
             		for (int i=0; i < optServersArray.size(); i++) {
-            			JSONObject serverObject = (JSONObject) ((JSONObject)optServersArray.get(i)).optJSONObject("CurrentServer");
-            			if(serverObject.getString("value").equals("option_1") == true){//remote case
-            				servers.add(new ServerBean(
-        						serverObject.getString("cmdToStart"),
-                    			serverObject.getString("cmdToShutdown"),
-                    			serverObject.getString("address"),
-    							serverObject.getString("serverName"),
-    							serverObject.getInt("jndiPort"),
-    							serverObject.getInt("timeout"),
-    							1));
-            			}
-            			else{//local case
-            				servers.add(new ServerBean(
-                        			serverObject.getString("serverName"),
-                        			serverObject.getString("homeDir"),
-                        			serverObject.getInt("jndiPort"),
-									serverObject.getString("address"),
-                        			serverObject.getInt("timeout"),
-                        			0));
-            			}
+            			servers.add(createServer(((JSONObject)optServersArray.get(i)).optJSONObject("CurrentServer")));
             		}
             	}
             }
@@ -348,6 +623,41 @@ public class JBossBuilder extends Builder {
             save();
             return super.configure(req, parameters);
         }
+
+        private ServerBean createServer(JSONObject serverObject) throws FormException {
+        	ConnectorEnum connector = ConnectorEnum.valueOf(serverObject.optString("connector", ConnectorEnum.JNP.name()));
+        	int managementPort = serverObject.optInt("managementPort", 9990);
+        	String address = serverObject.getString("address");
+        	if (JndiEndpoints.isCluster(address)
+        			&& (connector != ConnectorEnum.JNP || !serverObject.getString("value").equals("option_1"))) {
+        		throw new FormException("List of HA-JNDI endpoints '" + address + "' is supported only for remote servers with "
+        				+ ConnectorEnum.JNP.getDisplayName() + " connector.", "address");
+        	}
+        	if(serverObject.getString("value").equals("option_1") == true){//remote case
+        		return new ServerBean(
+        			serverObject.getString("cmdToStart"),
+        			serverObject.getString("cmdToShutdown"),
+        			serverObject.getString("address"),
+        			serverObject.getString("serverName"),
+        			serverObject.getInt("jndiPort"),
+        			serverObject.getInt("timeout"),
+        			1,
+        			connector,
+        			managementPort,
+        			serverObject.optString("managementUser"),
+        			Secret.fromString(serverObject.optString("managementPassword")));
+        	}
+        	else{//local case
+        		return new ServerBean(
+            			serverObject.getString("serverName"),
+            			serverObject.getString("homeDir"),
+            			serverObject.getInt("jndiPort"),
+						serverObject.getString("address"),
+            			serverObject.getInt("timeout"),
+            			0,
+            			serverObject.optBoolean("cds"));
+        	}
+        }
         
         public List<ServerBean> getServers() {
         	return this.servers;
@@ -356,6 +666,10 @@ public class JBossBuilder extends Builder {
         public OperationEnum[] getOperations() {
         	return OperationEnum.all;
         }
+
+        public ConnectorEnum[] getConnectors() {
+        	return ConnectorEnum.values();
+        }
         
         protected ServerBean findServer(String serverProfileName) {
         	for (ServerBean server : this.servers) {
@@ -377,6 +691,11 @@ public class JBossBuilder extends Builder {
     	private final int jndiPort;
     	private final int timeout;
     	private final int kind;
+    	private final ConnectorEnum connector;
+    	private final int managementPort;
+    	private final String managementUser;
+    	private final Secret managementPassword;
+    	private final boolean cds;
     	
     	/**
     	 * Constructor for ServerBean in remote case
@@ -387,12 +706,18 @@ public class JBossBuilder extends Builder {
     	 * @param jndiPort
     	 * @param timeout
     	 * @param kind
+    	 * @param connector
+    	 * @param managementPort
+    	 * @param managementUser user of the HTTP management interface
+    	 * @param managementPassword password of the management user
     	 */
 		public ServerBean(final String cmdToStart,
 						final String cmdToShutdown,
 						final String address,
 						final String serverName,
-						final int jndiPort, final int timeout, final int kind) {
+						final int jndiPort, final int timeout, final int kind,
+						final ConnectorEnum connector, final int managementPort,
+						final String managementUser, final Secret managementPassword) {
     		this.cmdToStart = cmdToStart;
     		this.cmdToShutdown = cmdToShutdown;
     		this.address = address;
@@ -400,27 +725,40 @@ public class JBossBuilder extends Builder {
     		this.jndiPort =jndiPort;
     		this.timeout = timeout;
     		this.kind = kind;
+    		this.connector = connector;
+    		this.managementPort = managementPort;
+    		this.managementUser = Util.fixEmptyAndTrim(managementUser);
+    		this.managementPassword = managementPassword;
+    		this.cds = false;
     		//empty initialization
     		this.homeDir = "";
     	}
 		
 		/**
-		 * Constructor for ServerBean in local case
+		 * Constructor for ServerBean in local case.
+		 * Local servers are started by <code>bin/run.sh</code> of JBoss 4/5, so they are managed by JNP connector.
 		 * @param serverName
 		 * @param homeDir
 		 * @param jndiPort
 		 * @param address
 		 * @param timeout
 		 * @param kind
+		 * @param cds use class-data-sharing archive
 		 */
 		public ServerBean(final String serverName,
 						final String homeDir,
-						final int jndiPort,final String address, final int timeout, final int kind) {
+						final int jndiPort,final String address, final int timeout, final int kind,
+						final boolean cds) {
 			this.serverName = serverName;
 			this.homeDir = homeDir;
 			this.jndiPort =jndiPort;
 			this.timeout = timeout;
 			this.kind = kind;
+			this.connector = ConnectorEnum.JNP;
+			this.managementPort = 0;
+			this.managementUser = null;
+			this.managementPassword = null;
+			this.cds = cds;
 			if (address == null || address.length() == 0){
 				this.address = "127.0.0.1";
 			} else {
@@ -462,6 +800,34 @@ public class JBossBuilder extends Builder {
     	public int getKind() {
 			return kind;
 		}
+
+    	/**
+    	 * Gets type of the management connector, JNP for servers configured before it was selectable.
+    	 * Local servers are always managed by JNP, they are started by <code>bin/run.sh</code> of JBoss 4/5.
+    	 */
+    	public ConnectorEnum getConnectorType() {
+    		return connector != null && kind == 1 ? connector : ConnectorEnum.JNP;
+    	}
+
+    	public ManagementConnector getConnector() {
+    		return getConnectorType().getConnector();
+    	}
+
+    	public int getManagementPort() {
+    		return managementPort > 0 ? managementPort : 9990;
+    	}
+
+    	public String getManagementUser() {
+    		return managementUser;
+    	}
+
+    	public Secret getManagementPassword() {
+    		return managementPassword;
+    	}
+
+    	public boolean isCds() {
+    		return cds;
+    	}
     	
     	@Override
     	public String toString() {
@@ -473,7 +839,9 @@ public class JBossBuilder extends Builder {
     				.append(" timeout=")
     				.append(timeout)
     				.append(" kind=")
-    				.append(kind).toString();
+    				.append(kind)
+    				.append(" connector=")
+    				.append(getConnectorType()).toString();
     	}
     }
 }
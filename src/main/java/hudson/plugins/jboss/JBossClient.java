@@ -0,0 +1,103 @@
+package hudson.plugins.jboss;
+
+import hudson.PluginWrapper;
+import hudson.model.BuildListener;
+import hudson.model.Hudson;
+
+import java.io.File;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.logging.Logger;
+
+/**
+ * Holder of the isolated class loader with JBoss client classes (JNP naming, RMI invoker, JMX adaptor).
+ *
+ * Classes are shipped in <code>WEB-INF/jboss-client</code> instead of <code>WEB-INF/lib</code>,
+ * so Jenkins does not pay for them until the first JNP step runs.
+ * The loader is used as context class loader of the JNP calls,
+ * since naming context factory and RMI proxies are resolved through it.
+ */
+public final class JBossClient {
+
+	private static final Logger LOGGER = Logger.getLogger(JBossClient.class.getName());
+
+	private static final String CLIENT_DIR = "WEB-INF/jboss-client/";
+
+	/**
+	 * Classes needed by every JNP call, missing class means broken packaging of the plugin.
+	 */
+	private static final String[] REQUIRED_CLASSES = new String[]{
+		"org.jnp.interfaces.NamingContextFactory",
+		"org.jboss.jmx.adaptor.rmi.RMIAdaptor",
+		"org.jboss.proxy.ClientContainer",
+		"org.jboss.invocation.jrmp.interfaces.JRMPInvokerProxy",
+		// naming proxy of HA-JNDI endpoints
+		"org.jboss.ha.framework.interfaces.HARMIClient"};
+
+	private static ClassLoader classLoader;
+
+	private JBossClient() {
+		// utility class cannot be instantiated
+	}
+
+	/**
+	 * Gets class loader of the JBoss client, creates it on the first call.
+	 * Time and number of classes loaded by the first call are reported, the count is taken
+	 * from the whole JVM, so it is only indicative when other threads load classes meanwhile.
+	 *
+	 * @param listener for logging purpose
+	 * @throws IllegalStateException if the client classes are not packaged with the plugin
+	 */
+	public static synchronized ClassLoader getClassLoader(BuildListener listener) {
+		if (classLoader == null) {
+			ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+			long loadedClasses = classLoading.getTotalLoadedClassCount();
+			long startTime = System.currentTimeMillis();
+
+			ClassLoader loader = createClassLoader();
+			for (String name : REQUIRED_CLASSES) {
+				try {
+					Class.forName(name, true, loader);
+				} catch (ClassNotFoundException e) {
+					throw new IllegalStateException("JBoss client class " + name + " is missing in " + CLIENT_DIR
+							+ " of the plugin, check includes of the unpack-jboss-client execution.", e);
+				}
+			}
+			classLoader = loader;
+
+			String report = String.format("JBoss client loaded lazily in %d ms, %d classes loaded.",
+					System.currentTimeMillis() - startTime,
+					classLoading.getTotalLoadedClassCount() - loadedClasses);
+			LOGGER.info(report);
+			listener.getLogger().println(report);
+		}
+		return classLoader;
+	}
+
+	/**
+	 * Creates class loader of <code>WEB-INF/jboss-client</code>, the classes are not available anywhere else.
+	 */
+	private static ClassLoader createClassLoader() {
+		PluginWrapper plugin = Hudson.getInstance().getPluginManager().whichPlugin(JBossClient.class);
+		if (plugin == null) {
+			throw new IllegalStateException("Unable to locate " + CLIENT_DIR + ", JBoss plugin is not found.");
+		}
+		URL clientUrl;
+		try {
+			clientUrl = new URL(plugin.baseResourceURL, CLIENT_DIR);
+			if ("file".equals(clientUrl.getProtocol()) && !new File(clientUrl.toURI()).isDirectory()) {
+				throw new IllegalStateException(clientUrl + " not found, JBoss client is not packaged with the plugin.");
+			}
+		} catch (MalformedURLException e) {
+			throw new IllegalStateException("Unable to locate " + CLIENT_DIR, e);
+		} catch (URISyntaxException e) {
+			throw new IllegalStateException("Unable to locate " + CLIENT_DIR, e);
+		}
+		// JDK classes only, JBoss client must not see classes of Jenkins and other plugins
+		return new URLClassLoader(new URL[]{clientUrl}, ClassLoader.getSystemClassLoader().getParent());
+	}
+}
@@ -0,0 +1,50 @@
+package hudson.plugins.jboss;
+
+import hudson.Extension;
+import hudson.model.Hudson;
+import hudson.model.RootAction;
+
+import java.util.Map;
+
+/**
+ * Page with metrics of the remote calls and process launches made by the plugin.
+ */
+@Extension
+public class JBossMetricsAction implements RootAction {
+
+	public String getIconFileName() {
+		return Hudson.getInstance().hasPermission(Hudson.ADMINISTER) ? "graph.gif" : null;
+	}
+
+	public String getDisplayName() {
+		return "JBoss Metrics";
+	}
+
+	public String getUrlName() {
+		return "jboss-metrics";
+	}
+
+	public Map<String, RemoteCallStats[]> getServers() {
+		return RemoteCallMetrics.getServers();
+	}
+
+	public RemoteCallMetrics.Call[] getCalls() {
+		return RemoteCallMetrics.getCalls();
+	}
+
+	/**
+	 * Gets labels of the histogram buckets.
+	 */
+	public String[] getBuckets() {
+		String[] buckets = new String[RemoteCallStats.BUCKETS];
+		for (int i = 0; i < buckets.length - 1; i++) {
+			buckets[i] = "<" + (1L << i) + " ms";
+		}
+		buckets[buckets.length - 1] = ">=" + (1L << (buckets.length - 2)) + " ms";
+		return buckets;
+	}
+
+	public String format(double millis) {
+		return String.format("%.1f", millis);
+	}
+}
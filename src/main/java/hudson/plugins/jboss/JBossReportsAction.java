@@ -0,0 +1,108 @@
+package hudson.plugins.jboss;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Action;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Build page linking reports written by the plugin to the build directory
+ * (thread dumps, memory statistics, connection pools, rolling restart timing).
+ */
+public class JBossReportsAction implements Action {
+
+	/**
+	 * Names of the reports, only these files are served.
+	 */
+	private static final Pattern REPORTS = Pattern.compile(
+			"jboss-threaddump-\\d+\\.(html|json)|jboss-memory\\.txt|jboss-pools\\.txt|jboss-rolling-restart\\.txt");
+
+	private final List<String> files = new ArrayList<String>();
+
+	public String getIconFileName() {
+		return "clipboard.gif";
+	}
+
+	public String getDisplayName() {
+		return "JBoss Reports";
+	}
+
+	public String getUrlName() {
+		return "jboss-reports";
+	}
+
+	public synchronized List<String> getFiles() {
+		return new ArrayList<String>(files);
+	}
+
+	/**
+	 * Attaches reports found in the build directory to the build, action is added with the first report.
+	 *
+	 * @param build the build
+	 */
+	public static void attach(AbstractBuild<?, ?> build) {
+		String[] names = build.getRootDir().list();
+		if (names == null) {
+			return;
+		}
+		Arrays.sort(names);
+		synchronized (JBossReportsAction.class) {
+			JBossReportsAction action = build.getAction(JBossReportsAction.class);
+			for (String name : names) {
+				if (!REPORTS.matcher(name).matches()) {
+					continue;
+				}
+				if (action == null) {
+					action = new JBossReportsAction();
+					build.addAction(action);
+				}
+				action.addFile(name);
+			}
+		}
+	}
+
+	private synchronized void addFile(String name) {
+		if (!files.contains(name)) {
+			files.add(name);
+		}
+	}
+
+	/**
+	 * Serves report given by <code>name</code> parameter as plain text,
+	 * thread dumps are generated by the server and are not rendered as HTML.
+	 */
+	public void doFile(StaplerRequest req, StaplerResponse rsp) throws IOException {
+		AbstractBuild<?, ?> build = req.findAncestorObject(AbstractBuild.class);
+		String name = req.getParameter("name");
+		if (build == null || name == null || !getFiles().contains(name)) {
+			rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		File file = new File(build.getRootDir(), name);
+		if (!file.isFile()) {
+			rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		rsp.setContentType("text/plain;charset=UTF-8");
+		InputStream in = new FileInputStream(file);
+		try {
+			IOUtils.copy(in, rsp.getOutputStream());
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+}
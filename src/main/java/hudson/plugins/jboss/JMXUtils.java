@@ -2,14 +2,24 @@ package hudson.plugins.jboss;
 
 import hudson.model.BuildListener;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
+import javax.management.Attribute;
 import javax.management.MBeanServerConnection;
 import javax.management.ObjectName;
+import javax.management.Query;
+import javax.management.QueryExp;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 
+import org.apache.commons.io.FileUtils;
 import org.jboss.system.ServiceMBean;
 
 /**
@@ -20,6 +30,13 @@ import org.jboss.system.ServiceMBean;
  */
 public class JMXUtils {
 
+	/**
+	 * Stages of Tomcat request processor between reading of the request and writing of the response
+	 * (see <code>org.apache.coyote.Constants</code>).
+	 */
+	private static final int REQUEST_STAGE_PARSE = 1;
+	private static final int REQUEST_STAGE_ENDOUTPUT = 5;
+
 	/**
 	 * Default constructor.
 	 */
@@ -30,27 +47,81 @@ public class JMXUtils {
 	/**
 	 * Gets {@link InitialContext} from given server and port.
 	 * 
+	 * Comma separated list of HA-JNDI endpoints can be given as host name,
+	 * the fastest responding endpoint is used then (see {@link JndiEndpoints}).
+	 * 
 	 * @param hostName Name of the server connect to
 	 * @param jndiPort Port number of naming service
 	 * 
 	 * @return Obtained InitialContext, or RuntimeException will thrown.
 	 */
 	public static InitialContext getInitialContext(final String hostName, final int jndiPort) {
-		Properties env = new Properties();
+		String providerUrl = JndiEndpoints.isCluster(hostName)
+				? JndiEndpoints.providerUrl(hostName, jndiPort) : hostName + ":" + jndiPort;
+		RemoteCallStats stats = RemoteCallMetrics.of(RemoteCallMetrics.serverOf(providerUrl),
+				RemoteCallMetrics.Call.CONTEXT);
+		long start = System.nanoTime();
 		try {
-			env.put("java.naming.factory.initial",
-					"org.jnp.interfaces.NamingContextFactory");
-			env.put("java.naming.factory.url.pkgs",
-					"org.jboss.naming:org.jnp.interfaces");
-			env.put("java.naming.provider.url", hostName + ":" + jndiPort);
-			return new InitialContext(env);
+			InitialContext ctx = createContext(providerUrl);
+			stats.record(start, false);
+			return ctx;
 		} catch (NamingException e) {
+			stats.record(start, true);
 			throw new RuntimeException(
 					"Unable to instantiate naming context: " + e.getMessage(),
 					e);
 		}
 	}
 
+	/**
+	 * Creates JNP naming context with socket timeouts of {@link RemoteCalls}.
+	 * 
+	 * @param providerUrl naming provider URL, <code>host:port</code> or comma separated list of them
+	 */
+	static InitialContext createContext(final String providerUrl) throws NamingException {
+		return createContext(providerUrl, true);
+	}
+
+	/**
+	 * Creates JNP naming context with socket timeouts of {@link RemoteCalls}.
+	 * 
+	 * @param providerUrl naming provider URL, <code>host:port</code> or comma separated list of them
+	 * @param discovery false if multicast discovery must not be used when the provider URL does not answer
+	 */
+	static InitialContext createContext(final String providerUrl, boolean discovery) throws NamingException {
+		Properties env = new Properties();
+		env.put("java.naming.factory.initial",
+				"org.jnp.interfaces.NamingContextFactory");
+		env.put("java.naming.factory.url.pkgs",
+				"org.jboss.naming:org.jnp.interfaces");
+		env.put("java.naming.provider.url", providerUrl);
+		env.put("jnp.timeout", String.valueOf(RemoteCalls.CONNECT_TIMEOUT * 1000));
+		env.put("jnp.sotimeout", String.valueOf(RemoteCalls.READ_TIMEOUT * 1000));
+		if (!discovery) {
+			env.put("jnp.disableDiscovery", "true");
+		}
+		return new InitialContext(env);
+	}
+
+    /**
+     * Gets Managed Beans server for given server and port, see {@link #getInitialContext(String, int)}.
+     * Calls made through the connection to list of HA-JNDI endpoints fail over to other endpoint
+     * when the connection is lost (see {@link JndiEndpoints#withFailover}).
+     * 
+     * @param hostName name of the server connect to
+     * @param jndiPort port number of naming service
+     * @param listener used only for logging purpose
+     * @param timeout timeout of connection in seconds
+     * 
+     * @return server connection, null if the server is shut down, or exception will thrown if failed
+     */
+    public static MBeanServerConnection getMBeanServer(final String hostName, final int jndiPort,
+    		final BuildListener listener, final int timeout) {
+    	MBeanServerConnection server = getMBeanServer(getInitialContext(hostName, jndiPort), listener, timeout);
+    	return JndiEndpoints.isCluster(hostName)
+    			? JndiEndpoints.withFailover(server, hostName, jndiPort, listener) : server;
+    }
+
     /**
      * Gets Managed Beans server for given naming context.
      * 
@@ -58,28 +129,52 @@ public class JMXUtils {
      * @param listener used only for logging purpose
      * @param timeout timeout of connection in seconds
      * 
-     * @return server connection or exception will thrown if failed
+     * @return server connection or exception will thrown if failed,
+     * 		all calls made through the connection have enforced deadline
+     * 
+     * @throws RemoteCallTimeoutException if lookup did not finish before deadline,
+     * 		{@link RemoteCalls#READ_TIMEOUT} or the rest of the timeout if shorter
      */
     public static MBeanServerConnection getMBeanServer(
     		final InitialContext ctx, final BuildListener listener, final int timeout) {
     	
 		MBeanServerConnection server = null;
 		NamingException ne = null;
+		String serverKey = RemoteCallMetrics.serverOf(ctx);
+		RemoteCallStats lookupStats = RemoteCallMetrics.of(serverKey, RemoteCallMetrics.Call.LOOKUP);
+		long lookupStart = 0;
 		
 		long startTime = System.currentTimeMillis();
 		while (System.currentTimeMillis() - startTime < timeout * 1000) {
 			try {
 				Thread.sleep(100);
-				server = (MBeanServerConnection) ctx
-						.lookup("jmx/invoker/RMIAdaptor");
+				// lookup does not outlive timeout of the caller
+				long remaining = timeout * 1000L - (System.currentTimeMillis() - startTime);
+				int deadline = (int) Math.min(RemoteCalls.READ_TIMEOUT, Math.max(1, (remaining + 999) / 1000));
+				lookupStart = System.nanoTime();
+				server = RemoteCalls.call(new Callable<MBeanServerConnection>() {
+					public MBeanServerConnection call() throws NamingException {
+						return (MBeanServerConnection) ctx
+								.lookup("jmx/invoker/RMIAdaptor");
+					}
+				}, deadline, "lookup of jmx/invoker/RMIAdaptor on " + serverKey);
+				lookupStats.record(lookupStart, false);
 				break;
 			} catch (NamingException e) {
+				lookupStats.record(lookupStart, true);
 				ne = e;
 			} catch (InterruptedException e) {
 				listener.getLogger().println(
 						"Thread interrupted while waiting for MBean connection: "
 								+ e.getMessage());
+				Thread.currentThread().interrupt();
 				return server;
+			} catch (RuntimeException e) {
+				lookupStats.record(lookupStart, true);
+				throw e;
+			} catch (Exception e) {
+				lookupStats.record(lookupStart, true);
+				throw new RuntimeException("Unable to lookup MBean connection: " + e.getMessage(), e);
 			}
 		}
 
@@ -109,7 +204,27 @@ public class JMXUtils {
 					.append(timeout).append(" seconds.").toString(), ne);
 		}
 
-		return server;
+		return RemoteCallMetrics.instrument(RemoteCalls.withDeadline(server, serverKey), serverKey);
+	}
+
+    /**
+     * Reads given attributes of the MBean with single remote call.
+     * 
+     * @param server given {@link MBeanServerConnection}
+     * @param name name of the MBean
+     * @param attributes names of the attributes
+     * 
+     * @return values of the attributes by name, missing attributes are not included
+     * 
+     * @throws Exception A few types of exception can be thrown.
+     */
+	public static Map<String, Object> getAttributes(MBeanServerConnection server, ObjectName name,
+			String[] attributes) throws Exception {
+		Map<String, Object> values = new HashMap<String, Object>();
+		for (Object attribute : server.getAttributes(name, attributes)) {
+			values.put(((Attribute) attribute).getName(), ((Attribute) attribute).getValue());
+		}
+		return values;
 	}
 
     /**
@@ -147,8 +262,7 @@ public class JMXUtils {
 
 		boolean started = false;
 		try {
-			InitialContext ctx = getInitialContext(hostName, jndiPort);
-			MBeanServerConnection server = getMBeanServer(ctx, listener, timeout);
+			MBeanServerConnection server = getMBeanServer(hostName, jndiPort, listener, timeout);
 			
 			//case when server is shutdown
 			if(server == null) return false;
@@ -160,6 +274,13 @@ public class JMXUtils {
 				try {
 					Thread.sleep(1000);
 					started = isServerStarted(server);
+				} catch (RemoteCallTimeoutException e) {
+					throw e;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				} catch (InterruptedIOException e) {
+					return false;
 				} catch (Exception e) {
 					throw new RuntimeException("Unable to wait: " + e.getMessage(),
 						e);
@@ -173,6 +294,159 @@ public class JMXUtils {
 		return started;
     }
 
+	/**
+	 * Collects thread dumps and memory statistics from the server.
+	 * Used when the server did not start before timeout, so it is possible to tell
+	 * deadlocked deployer from the slow one.
+	 * 
+	 * Each thread dump is stored as separate file in given directory,
+	 * memory statistics are printed to the log and stored in <code>jboss-memory.txt</code>.
+	 * 
+     * @param hostName name of the server connect to
+     * @param jndiPort port number of naming service
+     * @param listener {@link BuildListener} for logging purpose
+     * @param targetDir directory where dumps will be stored (usually root directory of the build)
+     * @param dumps number of dumps to collect
+     * @param interval interval between dumps in seconds
+     * 
+	 * @return number of collected dumps
+	 */
+	public static int collectDiagnostics(final String hostName,
+			final int jndiPort, final BuildListener listener,
+			final File targetDir, final int dumps, final int interval) {
+
+		if (dumps <= 0) {
+			return 0;
+		}
+
+		MBeanServerConnection server;
+		try {
+			server = getMBeanServer(hostName, jndiPort, listener, 5);
+		} catch (RuntimeException e) {
+			server = null;
+		}
+		if (server == null) {
+			listener.getLogger().println("MBean connection is not available, no diagnostics collected.");
+			return 0;
+		}
+
+		listener.getLogger().println(
+				String.format("Collecting %d thread dump(s) every %d seconds...", dumps, interval));
+
+		StringBuilder memory = new StringBuilder();
+		int collected = 0;
+		for (int i = 1; i <= dumps; i++) {
+			try {
+				ObjectName serverInfoMBeanName = new ObjectName("jboss.system:type=ServerInfo");
+
+				String threadDump = (String) server.invoke(serverInfoMBeanName, "listThreadDump", null, null);
+				File dumpFile = new File(targetDir, "jboss-threaddump-" + i + ".html");
+				FileUtils.writeStringToFile(dumpFile, threadDump);
+
+				String memoryLine = String.format("#%d free=%d MB, total=%d MB, max=%d MB",
+						i,
+						toMegaBytes(server.getAttribute(serverInfoMBeanName, "FreeMemory")),
+						toMegaBytes(server.getAttribute(serverInfoMBeanName, "TotalMemory")),
+						toMegaBytes(server.getAttribute(serverInfoMBeanName, "MaxMemory")));
+				memory.append(memoryLine).append('\n');
+
+				listener.getLogger().println(
+						String.format("Thread dump stored in '%s', memory %s", dumpFile.getName(), memoryLine));
+				collected++;
+			} catch (Exception e) {
+				listener.getLogger().println("Unable to collect diagnostics: " + e.getMessage());
+				break;
+			}
+
+			if (i < dumps) {
+				try {
+					Thread.sleep(interval * 1000L);
+				} catch (InterruptedException e) {
+					listener.getLogger().println(
+							"Thread interrupted while collecting diagnostics: " + e.getMessage());
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+
+		if (memory.length() > 0) {
+			try {
+				FileUtils.writeStringToFile(new File(targetDir, "jboss-memory.txt"), memory.toString());
+			} catch (IOException e) {
+				listener.getLogger().println("Unable to store memory statistics: " + e.getMessage());
+			}
+		}
+		return collected;
+	}
+
+	/**
+	 * Waits until active sessions of the web applications expire and requests in progress finish.
+	 * Requests in progress are request processors of the connectors which are not idle in keep-alive.
+	 * Idle session managers and request processors are filtered out by the server,
+	 * active sessions are read from the remaining managers.
+	 * 
+     * @param hostName name of the server connect to
+     * @param jndiPort port number of naming service
+     * @param listener {@link BuildListener} for logging purpose
+     * @param timeout how long will we wait for the drain
+     * 
+	 * @return true if the server has been drained, false otherwise
+	 */
+	public static boolean drain(final String hostName,
+			final int jndiPort, final BuildListener listener, final int timeout) {
+
+		DrainProgress progress = new DrainProgress(listener);
+		try {
+			MBeanServerConnection server = getMBeanServer(hostName, jndiPort, listener, 20);
+			if (server == null) {
+				return false;
+			}
+			ObjectName managers = new ObjectName("jboss.web:type=Manager,*");
+			QueryExp withSessions = Query.gt(Query.attr("activeSessions"), Query.value(0));
+			ObjectName processors = new ObjectName("jboss.web:type=RequestProcessor,*");
+			QueryExp inProgress = Query.and(
+					Query.geq(Query.attr("stage"), Query.value(REQUEST_STAGE_PARSE)),
+					Query.leq(Query.attr("stage"), Query.value(REQUEST_STAGE_ENDOUTPUT)));
+
+			while (true) {
+				// idle managers and processors are filtered out by the server, active managers are read in one call each
+				long sessions = 0;
+				for (ObjectName name : server.queryNames(managers, withSessions)) {
+					sessions += toLong(getAttributes(server, name, new String[]{"activeSessions"}).get("activeSessions"));
+				}
+				Set<ObjectName> requests = server.queryNames(processors, inProgress);
+				if (progress.update(sessions, requests.size())) {
+					progress.drained();
+					return true;
+				}
+				if (progress.isExpired(timeout)) {
+					progress.expired(timeout);
+					return false;
+				}
+				Thread.sleep(1000);
+			}
+		} catch (InterruptedException e) {
+			listener.getLogger().println(
+					"Thread interrupted while draining server: " + e.getMessage());
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (InterruptedIOException e) {
+			return false;
+		} catch (Exception e) {
+			listener.getLogger().println("Unable to drain server, shutting down immediately: " + e.getMessage());
+			return false;
+		}
+	}
+
+	private static long toLong(Object value) {
+		return value instanceof Number ? ((Number) value).longValue() : 0;
+	}
+
+	private static long toMegaBytes(Object bytes) {
+		return ((Long) bytes).longValue() / (1024 * 1024);
+	}
+
 	/**
 	 * Checks if given modules have been correctly deployed.
 	 * 
@@ -189,40 +463,167 @@ public class JMXUtils {
 		
 		listener.getLogger().println("Verification of deplyed modules started");
 				
-		InitialContext ctx = getInitialContext(hostName, jndiPort);
-
-		MBeanServerConnection server = getMBeanServer(ctx, listener, timeout);
+		MBeanServerConnection server = getMBeanServer(hostName, jndiPort, listener, timeout);
 	
 		boolean deployed = true;
+		try {
+			for (String moduleName : modules) {
+				if (moduleName.endsWith(".ear")) {
+					boolean ok = checkEARDeploymentState(listener, server, moduleName);
+					listener.getLogger().println(
+							String.format("Verifying deployment of the EAR '%s' ... %s",
+									moduleName, ok?"SUCCESS":"FAILED"));
+					deployed &= ok;
+				} else if (moduleName.endsWith(".jar")) {
+					boolean ok = checkEJBDeploymentState(listener, server, moduleName);
+					listener.getLogger().println(
+							String.format("Verifying deployment of the EJB '%s' ... %s",
+									moduleName, ok?"SUCCESS":"FAILED"));
+					deployed &= ok;
+				} else if (moduleName.endsWith(".war")) {
+					boolean ok = checkWARDeploymentState(listener, server, moduleName);
+					listener.getLogger().println(
+							String.format("Verifying deployment of the WAR '%s' ... %s",
+									moduleName, ok?"SUCCESS":"FAILED"));
+					deployed &= ok;
+				} else {
+					listener.error(
+							String.format("Unknown type of the module '%s'. Cannot verify deployment.", moduleName));
+					deployed = false;
+				}
+			}
+		} catch (InterruptedIOException e) {
+			listener.getLogger().println("Verification of deployed modules interrupted.");
+			return false;
+		}
+
+		listener.getLogger().println("Verification finished.");
+
+		return deployed;
+	}
+
+	/**
+	 * Triggers immediate scan of the deployment directory and waits until all given modules are started.
+	 * Waiting is finished as soon as any module fails.
+	 * Scan deploys the modules synchronously, scan exceeding deadline of the remote call is still in progress,
+	 * not failed, so the modules are awaited as usual.
+	 * 
+     * @param hostName name of the server connect to
+     * @param jndiPort port number of naming service
+     * @param listener {@link BuildListener} for logging purpose
+     * @param timeout how long will we wait for deployment
+     * @param modules names of the modules
+     * 
+	 * @return true if all modules have been started, false otherwise
+	 */
+	public static boolean waitForDeploy(final String hostName,
+			final int jndiPort, final BuildListener listener,
+			final int timeout, final String[] modules) {
+
 		for (String moduleName : modules) {
-			if (moduleName.endsWith(".ear")) {
-				boolean ok = checkEARDeploymentState(listener, server, moduleName);
-				listener.getLogger().println(
-						String.format("Verifying deployment of the EAR '%s' ... %s",
-								moduleName, ok?"SUCCESS":"FAILED"));
-				deployed &= ok;
-			} else if (moduleName.endsWith(".jar")) {
-				boolean ok = checkEJBDeploymentState(listener, server, moduleName);
-				listener.getLogger().println(
-						String.format("Verifying deployment of the EJB '%s' ... %s",
-								moduleName, ok?"SUCCESS":"FAILED"));
-				deployed &= ok;
-			} else if (moduleName.endsWith(".war")) {
-				boolean ok = checkWARDeploymentState(listener, server, moduleName);
-				listener.getLogger().println(
-						String.format("Verifying deployment of the WAR '%s' ... %s",
-								moduleName, ok?"SUCCESS":"FAILED"));
-				deployed &= ok;
-			} else {
+			if (!isKnownModuleType(moduleName)) {
 				listener.error(
 						String.format("Unknown type of the module '%s'. Cannot verify deployment.", moduleName));
-				deployed = false;
+				return false;
 			}
 		}
 
-		listener.getLogger().println("Verification finished.");
+		MBeanServerConnection server = getMBeanServer(hostName, jndiPort, listener, timeout);
+		if (server == null) {
+			return false;
+		}
 
-		return deployed;
+		// timeout of the step includes the scan, URLDeploymentScanner deploys the modules within the scan call
+		DeploymentProgress progress = new DeploymentProgress(listener, modules);
+		try {
+			server.invoke(new ObjectName("jboss.deployment:type=DeploymentScanner,flavor=URL"), "scan", null, null);
+			listener.getLogger().println("Deployment scan triggered.");
+		} catch (RemoteCallTimeoutException e) {
+			// scan is still running on the server, deployed modules are reported by their state
+			listener.getLogger().println(String.format(
+					"Deployment scan still in progress after %.1f sec, waiting for the modules.", progress.elapsed()));
+		} catch (Exception e) {
+			listener.getLogger().println(
+					"Unable to trigger deployment scan, waiting for the next scan period: " + e.getMessage());
+		}
+
+		while (true) {
+			for (String moduleName : modules) {
+				if (!progress.isPending(moduleName)) {
+					continue;
+				}
+				Integer state;
+				try {
+					state = getDeploymentState(server, moduleName);
+				} catch (InterruptedIOException e) {
+					return false;
+				}
+				if (state == null) {
+					continue;
+				}
+				if (state.intValue() == ServiceMBean.STARTED) {
+					progress.started(moduleName);
+				} else if (state.intValue() == ServiceMBean.FAILED
+						|| state.intValue() == ServiceMBean.DESTROYED) {
+					progress.failed(moduleName);
+					return false;
+				}
+			}
+			if (progress.isComplete()) {
+				return true;
+			}
+			if (progress.isExpired(timeout)) {
+				progress.expired(timeout);
+				return false;
+			}
+			try {
+				Thread.sleep(1000);
+			} catch (InterruptedException e) {
+				listener.getLogger().println(
+						"Thread interrupted while waiting for deployment: " + e.getMessage());
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Fills connection pools of the datasources up to given size and waits until they are filled.
+	 * 
+     * @param hostName name of the server connect to
+     * @param jndiPort port number of naming service
+     * @param listener {@link BuildListener} for logging purpose
+     * @param timeout how long will we wait for the pools
+     * @param minSize target number of connections of each pool
+     * @param pools names of the pools, all pools if empty
+     * @param targetDir directory where <code>jboss-pools.txt</code> will be stored
+     * 
+	 * @return true if all pools have been filled, false otherwise
+	 */
+	public static boolean prefillPools(final String hostName,
+			final int jndiPort, final BuildListener listener,
+			final int timeout, final int minSize, final String[] pools, final File targetDir) {
+
+		MBeanServerConnection server = getMBeanServer(hostName, jndiPort, listener, timeout);
+		if (server == null) {
+			return false;
+		}
+
+		try {
+			return ConnectionPools.prefill(server, listener, timeout, minSize, pools, targetDir);
+		} catch (RemoteCallTimeoutException e) {
+			throw e;
+		} catch (InterruptedException e) {
+			listener.getLogger().println(
+					"Thread interrupted while waiting for connection pools: " + e.getMessage());
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (InterruptedIOException e) {
+			return false;
+		} catch (Exception e) {
+			listener.error("Unable to prefill connection pools: " + e.getMessage());
+			return false;
+		}
 	}
 
 	/**
@@ -237,19 +638,8 @@ public class JMXUtils {
 	 */
 	public static boolean checkWARDeploymentState(
 			final BuildListener listener,
-			MBeanServerConnection server, String warName) {
-		try {
-			String objectPattern = String.format("jboss.web.deployment:*,war=%s", warName);
-			@SuppressWarnings("unchecked")
-			Set<ObjectName> set = server.queryNames(new ObjectName(objectPattern), null);
-			if (set == null || set.size() == 0) {
-				return false; // no instance
-			}
-			ObjectName serverMBeanName = set.iterator().next(); // only first
-			return ServiceMBean.STARTED == (Integer) server.getAttribute(serverMBeanName, "State");
-		} catch (Exception e) {
-			return false;
-		}
+			MBeanServerConnection server, String warName) throws InterruptedIOException {
+		return Integer.valueOf(ServiceMBean.STARTED).equals(getWARDeploymentState(server, warName));
 	}
 
 	/**
@@ -264,14 +654,8 @@ public class JMXUtils {
 	 */
 	public static boolean checkEARDeploymentState(
 			final BuildListener listener,
-			MBeanServerConnection server, String earName) {
-		try {
-			ObjectName serverMBeanName = new ObjectName(
-					String.format("jboss.j2ee:service=EARDeployment,url='%s'", earName));
-			return ServiceMBean.STARTED == (Integer) server.getAttribute(serverMBeanName, "State");
-		} catch (Exception e) {
-			return false;
-		}
+			MBeanServerConnection server, String earName) throws InterruptedIOException {
+		return Integer.valueOf(ServiceMBean.STARTED).equals(getEARDeploymentState(server, earName));
 	}
 	
 	/**
@@ -286,13 +670,83 @@ public class JMXUtils {
 	 */
 	public static boolean checkEJBDeploymentState(
 			final BuildListener listener,
-			MBeanServerConnection server, String ejbName) {
+			MBeanServerConnection server, String ejbName) throws InterruptedIOException {
+		return Integer.valueOf(ServiceMBean.STARTED).equals(getEJBDeploymentState(server, ejbName));
+	}
+
+	/**
+	 * Gets state of the module, type of the module is recognized by extension.
+	 * 
+     * @param server given {@link MBeanServerConnection}
+     * @param moduleName the name of the module (EAR, EJB or WAR)
+     * 
+	 * @return one of the {@link ServiceMBean} states, or null if module is not (yet) deployed
+	 * @throws RemoteCallTimeoutException if the server did not answer before deadline
+	 * @throws InterruptedIOException if the call has been interrupted
+	 */
+	public static Integer getDeploymentState(MBeanServerConnection server, String moduleName)
+			throws InterruptedIOException {
+		if (moduleName.endsWith(".ear")) {
+			return getEARDeploymentState(server, moduleName);
+		} else if (moduleName.endsWith(".jar")) {
+			return getEJBDeploymentState(server, moduleName);
+		} else if (moduleName.endsWith(".war")) {
+			return getWARDeploymentState(server, moduleName);
+		}
+		return null;
+	}
+
+	/**
+	 * Checks if type of the module can be recognized by {@link #getDeploymentState(MBeanServerConnection, String)}.
+	 */
+	public static boolean isKnownModuleType(String moduleName) {
+		return moduleName.endsWith(".ear") || moduleName.endsWith(".jar") || moduleName.endsWith(".war");
+	}
+
+	private static Integer getWARDeploymentState(MBeanServerConnection server, String warName) throws InterruptedIOException {
+		try {
+			String objectPattern = String.format("jboss.web.deployment:*,war=%s", warName);
+			@SuppressWarnings("unchecked")
+			Set<ObjectName> set = server.queryNames(new ObjectName(objectPattern), null);
+			if (set == null || set.size() == 0) {
+				return null; // no instance
+			}
+			ObjectName serverMBeanName = set.iterator().next(); // only first
+			return (Integer) server.getAttribute(serverMBeanName, "State");
+		} catch (RemoteCallTimeoutException e) {
+			throw e;
+		} catch (InterruptedIOException e) {
+			throw e;
+		} catch (Exception e) {
+			return null; // not deployed
+		}
+	}
+
+	private static Integer getEARDeploymentState(MBeanServerConnection server, String earName) throws InterruptedIOException {
+		try {
+			ObjectName serverMBeanName = new ObjectName(
+					String.format("jboss.j2ee:service=EARDeployment,url='%s'", earName));
+			return (Integer) server.getAttribute(serverMBeanName, "State");
+		} catch (RemoteCallTimeoutException e) {
+			throw e;
+		} catch (InterruptedIOException e) {
+			throw e;
+		} catch (Exception e) {
+			return null; // not deployed
+		}
+	}
+
+	private static Integer getEJBDeploymentState(MBeanServerConnection server, String ejbName) throws InterruptedIOException {
 		try {
 			ObjectName serverMBeanName = new ObjectName(
 					String.format("jboss.j2ee:service=EjbModule,module=%s", ejbName));
-			return ServiceMBean.STARTED == (Integer) server.getAttribute(serverMBeanName, "State");
+			return (Integer) server.getAttribute(serverMBeanName, "State");
+		} catch (RemoteCallTimeoutException e) {
+			throw e;
+		} catch (InterruptedIOException e) {
+			throw e;
 		} catch (Exception e) {
-			return false;
+			return null; // not deployed
 		}
 	}
 }
@@ -0,0 +1,237 @@
+package hudson.plugins.jboss;
+
+import hudson.Util;
+import hudson.model.BuildListener;
+import hudson.util.DaemonThreadFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServerConnection;
+import javax.naming.InitialContext;
+
+/**
+ * HA-JNDI endpoints of the clustered servers.
+ *
+ * Address of the server can be comma separated list of <code>host[:port]</code> endpoints,
+ * JNDI port of the server is used where the port is not given.
+ * Endpoints are probed concurrently and the one which answered first is put first to the provider URL,
+ * the others follow in configured order and are used by the naming provider when connection fails.
+ * Probes of the slower endpoints are not waited for, they finish in background,
+ * so their latency is still recorded as {@link RemoteCallMetrics.Call#PROBE} of the endpoint.
+ * Probes do not use multicast discovery, so only the probed endpoint can answer.
+ *
+ * Selected provider URL is cached for {@link #CACHE_TTL} seconds, so consecutive calls of the build
+ * do not probe again. Cache of the address is invalidated when connection to the endpoint is lost.
+ * The TTL can be changed by system property <code>hudson.plugins.jboss.JndiEndpoints.cacheTtl</code> (seconds).
+ */
+final class JndiEndpoints {
+
+	public static final int CACHE_TTL = Integer.getInteger(JndiEndpoints.class.getName() + ".cacheTtl", 30);
+
+	private static final ExecutorService probes = Executors.newCachedThreadPool(new DaemonThreadFactory());
+
+	/**
+	 * Provider URLs by address and default port, guarded by itself.
+	 */
+	private static final Map<String, CachedUrl> providerUrls = new HashMap<String, CachedUrl>();
+
+	private static final class CachedUrl {
+		private final String url;
+		private final long expiration;
+
+		CachedUrl(String url, long expiration) {
+			this.url = url;
+			this.expiration = expiration;
+		}
+	}
+
+	private JndiEndpoints() {
+		// utility class cannot be instantiated
+	}
+
+	/**
+	 * Checks if given address is list of endpoints.
+	 */
+	static boolean isCluster(String address) {
+		return address.indexOf(',') >= 0;
+	}
+
+	/**
+	 * Gets endpoints of given address as <code>host:port</code>.
+	 */
+	static List<String> parse(String address, int jndiPort) {
+		List<String> endpoints = new ArrayList<String>();
+		for (String endpoint : Util.tokenize(address, ", \t")) {
+			endpoints.add(endpoint.indexOf(':') >= 0 ? endpoint : endpoint + ":" + jndiPort);
+		}
+		return endpoints;
+	}
+
+	/**
+	 * Gets provider URL with the fastest responding endpoint first, cached URL is used if not expired.
+	 * Configured order is kept if no endpoint responded before {@link RemoteCalls#CONNECT_TIMEOUT}.
+	 *
+	 * @param address comma separated list of endpoints
+	 * @param jndiPort default port of the endpoints
+	 */
+	static String providerUrl(String address, int jndiPort) {
+		String key = address + "#" + jndiPort;
+		synchronized (providerUrls) {
+			CachedUrl cached = providerUrls.get(key);
+			if (cached != null && System.currentTimeMillis() < cached.expiration) {
+				return cached.url;
+			}
+		}
+
+		String url = probeProviderUrl(address, jndiPort);
+		synchronized (providerUrls) {
+			providerUrls.put(key, new CachedUrl(url, System.currentTimeMillis() + CACHE_TTL * 1000L));
+		}
+		return url;
+	}
+
+	/**
+	 * Forgets cached provider URL of the address, endpoints are probed again by the next call.
+	 *
+	 * @param address comma separated list of endpoints
+	 * @param jndiPort default port of the endpoints
+	 */
+	static void invalidate(String address, int jndiPort) {
+		synchronized (providerUrls) {
+			providerUrls.remove(address + "#" + jndiPort);
+		}
+	}
+
+	private static String probeProviderUrl(String address, int jndiPort) {
+		List<String> endpoints = parse(address, jndiPort);
+		String fastest = null;
+		try {
+			fastest = probe(endpoints, RemoteCalls.CONNECT_TIMEOUT);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (fastest != null) {
+			endpoints.remove(fastest);
+			endpoints.add(0, fastest);
+		}
+
+		StringBuilder url = new StringBuilder();
+		for (String endpoint : endpoints) {
+			url.append(url.length() > 0 ? "," : "").append(endpoint);
+		}
+		return url.toString();
+	}
+
+	/**
+	 * Wraps connection obtained from list of endpoints, so the call failing with {@link IOException}
+	 * (the endpoint went down) is repeated once on the connection to other endpoint.
+	 * Interrupted calls and timeouts are not failed over.
+	 *
+	 * @param connection connection to the selected endpoint
+	 * @param address comma separated list of endpoints
+	 * @param jndiPort default port of the endpoints
+	 * @param listener for logging purpose
+	 */
+	static MBeanServerConnection withFailover(final MBeanServerConnection connection, final String address,
+			final int jndiPort, final BuildListener listener) {
+		if (connection == null) {
+			return null;
+		}
+		return (MBeanServerConnection) Proxy.newProxyInstance(
+				JndiEndpoints.class.getClassLoader(),
+				new Class<?>[]{MBeanServerConnection.class},
+				new InvocationHandler() {
+					private volatile MBeanServerConnection current = connection;
+
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						try {
+							return method.invoke(current, args);
+						} catch (InvocationTargetException e) {
+							Throwable cause = e.getCause();
+							if (!(cause instanceof IOException) || cause instanceof InterruptedIOException) {
+								throw cause;
+							}
+							listener.getLogger().println("Connection to HA-JNDI endpoint of " + address
+									+ " lost, failing over to other endpoint: " + cause.getMessage());
+							invalidate(address, jndiPort);
+							MBeanServerConnection next = JMXUtils.getMBeanServer(
+									JMXUtils.getInitialContext(address, jndiPort), listener, RemoteCalls.CONNECT_TIMEOUT);
+							if (next == null) {
+								throw cause;
+							}
+							current = next;
+						}
+						try {
+							return method.invoke(current, args);
+						} catch (InvocationTargetException e) {
+							throw e.getCause();
+						}
+					}
+				});
+	}
+
+	/**
+	 * Probes all endpoints concurrently.
+	 *
+	 * @return the first endpoint which answered, null if none answered before timeout
+	 */
+	private static String probe(List<String> endpoints, int timeout) throws InterruptedException {
+		final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		CompletionService<String> completion = new ExecutorCompletionService<String>(probes);
+		for (final String endpoint : endpoints) {
+			completion.submit(new Callable<String>() {
+				public String call() throws Exception {
+					Thread.currentThread().setContextClassLoader(contextClassLoader);
+					RemoteCallStats stats = RemoteCallMetrics.of(endpoint, RemoteCallMetrics.Call.PROBE);
+					long start = System.nanoTime();
+					try {
+						InitialContext ctx = JMXUtils.createContext(endpoint, false);
+						try {
+							ctx.lookup("jmx/invoker/RMIAdaptor");
+						} finally {
+							ctx.close();
+						}
+						stats.record(start, false);
+						return endpoint;
+					} catch (Exception e) {
+						stats.record(start, true);
+						throw e;
+					} finally {
+						Thread.currentThread().setContextClassLoader(null);
+					}
+				}
+			});
+		}
+
+		long deadline = System.currentTimeMillis() + timeout * 1000L;
+		for (int i = 0; i < endpoints.size(); i++) {
+			Future<String> done = completion.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+			if (done == null) {
+				return null;
+			}
+			try {
+				return done.get();
+			} catch (ExecutionException e) {
+				// endpoint is down, wait for the others
+			}
+		}
+		return null;
+	}
+}
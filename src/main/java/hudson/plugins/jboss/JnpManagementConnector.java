@@ -0,0 +1,65 @@
+package hudson.plugins.jboss;
+
+import hudson.model.BuildListener;
+import hudson.plugins.jboss.JBossBuilder.ServerBean;
+
+import java.io.File;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+
+/**
+ * {@link ManagementConnector} for JBoss 4/5 using JNP naming service
+ * and <code>jmx/invoker/RMIAdaptor</code>.
+ */
+public class JnpManagementConnector implements ManagementConnector {
+
+	public boolean checkServerStatus(ServerBean server,
+			BuildListener listener, int timeout, boolean ignoreErrors) {
+		return JMXUtils.checkServerStatus(server.getAddress(), server.getJndiPort(),
+				listener, timeout, ignoreErrors);
+	}
+
+	public boolean checkDeploy(ServerBean server, BuildListener listener,
+			int timeout, String[] modules) {
+		return JMXUtils.checkDeploy(server.getAddress(), server.getJndiPort(),
+				listener, timeout, modules);
+	}
+
+	public boolean waitForDeploy(ServerBean server, BuildListener listener,
+			int timeout, String[] modules) {
+		return JMXUtils.waitForDeploy(server.getAddress(), server.getJndiPort(),
+				listener, timeout, modules);
+	}
+
+	public boolean shutdown(ServerBean server, BuildListener listener) {
+		try {
+			MBeanServerConnection connection = JMXUtils.getMBeanServer(server.getAddress(), server.getJndiPort(),
+					listener, 20);
+			if (connection == null) {
+				return false;
+			}
+			connection.invoke(new ObjectName("jboss.system:type=Server"), "shutdown", null, null);
+			return true;
+		} catch (Exception e) {
+			listener.error("Unable to shutdown server: " + e.getMessage());
+			return false;
+		}
+	}
+
+	public boolean drain(ServerBean server, BuildListener listener, int timeout) {
+		return JMXUtils.drain(server.getAddress(), server.getJndiPort(), listener, timeout);
+	}
+
+	public int collectDiagnostics(ServerBean server, BuildListener listener,
+			File targetDir, int dumps, int interval) {
+		return JMXUtils.collectDiagnostics(server.getAddress(), server.getJndiPort(),
+				listener, targetDir, dumps, interval);
+	}
+
+	public boolean prefillPools(ServerBean server, BuildListener listener,
+			int timeout, int minSize, String[] pools, File targetDir) {
+		return JMXUtils.prefillPools(server.getAddress(), server.getJndiPort(),
+				listener, timeout, minSize, pools, targetDir);
+	}
+}
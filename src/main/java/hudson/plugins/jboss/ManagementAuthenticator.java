@@ -0,0 +1,121 @@
+package hudson.plugins.jboss;
+
+import hudson.Util;
+
+import java.io.UnsupportedEncodingException;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * Answers Digest and Basic challenges of the HTTP management endpoints with credentials of the management user.
+ *
+ * Credentials are sent on the connection itself, default {@link java.net.Authenticator} of the JVM
+ * is not touched, since Jenkins answers proxy challenges with it.
+ */
+final class ManagementAuthenticator {
+
+	private static final Pattern PARAMETER = Pattern.compile("(\\w+)\\s*=\\s*(?:\"([^\"]*)\"|([^\\s,]*))");
+
+	private static final SecureRandom random = new SecureRandom();
+
+	private ManagementAuthenticator() {
+		// utility class cannot be instantiated
+	}
+
+	/**
+	 * Gets value of <code>Authorization</code> header answering one of the challenges, Digest is preferred.
+	 *
+	 * @param challenges values of <code>WWW-Authenticate</code> headers, may be null
+	 * @param method HTTP method of the request
+	 * @param uri path of the request
+	 * @param user management user
+	 * @param password password of the user, may be null
+	 *
+	 * @return authorization, or null if no challenge is supported
+	 */
+	static String authorization(List<String> challenges, String method, String uri, String user, String password) {
+		if (challenges == null) {
+			return null;
+		}
+		String basic = null;
+		for (String challenge : challenges) {
+			String scheme = challenge.trim().toLowerCase(Locale.ENGLISH);
+			if (scheme.startsWith("digest ")) {
+				Map<String, String> parameters = parse(challenge.trim().substring("digest ".length()));
+				String algorithm = parameters.get("algorithm");
+				if (algorithm == null || "MD5".equalsIgnoreCase(algorithm)) {
+					return digest(parameters, method, uri, user, password, Long.toHexString(random.nextLong()));
+				}
+			} else if (scheme.startsWith("basic")) {
+				basic = basic(user, password);
+			}
+		}
+		return basic;
+	}
+
+	static String basic(String user, String password) {
+		try {
+			return "Basic " + new String(Base64.encodeBase64(
+					(user + ":" + (password != null ? password : "")).getBytes("UTF-8")), "US-ASCII");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Computes Digest authorization (RFC 2617), <code>qop=auth</code> is used if offered by the server.
+	 */
+	static String digest(Map<String, String> challenge, String method, String uri, String user, String password,
+			String cnonce) {
+		String realm = challenge.get("realm");
+		String nonce = challenge.get("nonce");
+		boolean auth = false;
+		if (challenge.get("qop") != null) {
+			for (String qop : Util.tokenize(challenge.get("qop"), ", ")) {
+				auth |= "auth".equals(qop);
+			}
+		}
+
+		String ha1 = Util.getDigestOf(user + ":" + realm + ":" + (password != null ? password : ""));
+		String ha2 = Util.getDigestOf(method + ":" + uri);
+		String nc = "00000001";
+		String response = auth
+				? Util.getDigestOf(ha1 + ":" + nonce + ":" + nc + ":" + cnonce + ":auth:" + ha2)
+				: Util.getDigestOf(ha1 + ":" + nonce + ":" + ha2);
+
+		StringBuilder authorization = new StringBuilder("Digest ");
+		authorization.append("username=\"").append(user).append("\", realm=\"").append(realm)
+				.append("\", nonce=\"").append(nonce).append("\", uri=\"").append(uri)
+				.append("\", response=\"").append(response).append('"');
+		if (auth) {
+			authorization.append(", qop=auth, nc=").append(nc).append(", cnonce=\"").append(cnonce).append('"');
+		}
+		if (challenge.containsKey("opaque")) {
+			authorization.append(", opaque=\"").append(challenge.get("opaque")).append('"');
+		}
+		if (challenge.containsKey("algorithm")) {
+			authorization.append(", algorithm=").append(challenge.get("algorithm"));
+		}
+		return authorization.toString();
+	}
+
+	/**
+	 * Parses parameters of the challenge, e.g. <code>realm="ManagementRealm", nonce="..."</code>.
+	 */
+	static Map<String, String> parse(String parameters) {
+		Map<String, String> values = new HashMap<String, String>();
+		Matcher matcher = PARAMETER.matcher(parameters);
+		while (matcher.find()) {
+			values.put(matcher.group(1).toLowerCase(Locale.ENGLISH),
+					matcher.group(2) != null ? matcher.group(2) : matcher.group(3));
+		}
+		return values;
+	}
+}
@@ -0,0 +1,108 @@
+package hudson.plugins.jboss;
+
+import hudson.model.BuildListener;
+import hudson.plugins.jboss.JBossBuilder.ServerBean;
+
+import java.io.File;
+
+/**
+ * Connector to the management interface of the server.
+ *
+ * Implementations hide the way how the plugin talks with given server,
+ * e.g. JNP naming and RMI adaptor (JBoss 4/5) or JSON HTTP management API (JBoss AS 7, WildFly).
+ */
+public interface ManagementConnector {
+
+    /**
+     * Waits for server status.
+     *
+     * @param server server to be checked
+     * @param listener {@link BuildListener} for logging purpose
+     * @param timeout how long will we wait for server start
+     * @param ignoreErrors if true any connection problems will be ignored
+     *
+     * @return true if server is up, false otherwise
+     */
+	boolean checkServerStatus(ServerBean server, BuildListener listener,
+			int timeout, boolean ignoreErrors);
+
+	/**
+	 * Checks if given modules have been correctly deployed.
+	 *
+	 * @param server server to be checked
+	 * @param listener {@link BuildListener} for logging purpose
+	 * @param timeout how long will we wait for connection
+	 * @param modules names of the modules
+	 *
+	 * @return true if gone fine, false if any module have deployment problem
+	 */
+	boolean checkDeploy(ServerBean server, BuildListener listener,
+			int timeout, String[] modules);
+
+	/**
+	 * Triggers immediate deployment scan and waits until all given modules are started.
+	 * Waiting is finished as soon as any module fails.
+	 *
+	 * @param server server to be checked
+	 * @param listener {@link BuildListener} for logging purpose
+	 * @param timeout how long will we wait for deployment
+	 * @param modules names of the modules
+	 *
+	 * @return true if all modules have been started, false otherwise
+	 */
+	boolean waitForDeploy(ServerBean server, BuildListener listener,
+			int timeout, String[] modules);
+
+	/**
+	 * Requests shutdown of the server through management interface.
+	 * Method is not waiting.
+	 *
+	 * @param server server to be stopped
+	 * @param listener {@link BuildListener} for logging purpose
+	 *
+	 * @return true if request has been accepted, false otherwise
+	 */
+	boolean shutdown(ServerBean server, BuildListener listener);
+
+	/**
+	 * Waits until web sessions of the server expire and requests in progress finish,
+	 * so shutdown does not cut off clients of the server.
+	 *
+	 * @param server server to be drained
+	 * @param listener {@link BuildListener} for logging purpose
+	 * @param timeout how long will we wait for the drain
+	 *
+	 * @return true if the server has been drained, false if timeout expired or counts are not available
+	 */
+	boolean drain(ServerBean server, BuildListener listener, int timeout);
+
+	/**
+	 * Collects thread dumps and memory statistics from the server.
+	 *
+	 * @param server server to be examined
+	 * @param listener {@link BuildListener} for logging purpose
+	 * @param targetDir directory where dumps will be stored
+	 * @param dumps number of dumps to collect
+	 * @param interval interval between dumps in seconds
+	 *
+	 * @return number of collected dumps
+	 */
+	int collectDiagnostics(ServerBean server, BuildListener listener,
+			File targetDir, int dumps, int interval);
+
+	/**
+	 * Fills datasource connection pools up to given size and waits until they are filled.
+	 * Pool sizes and connection creation times are stored in <code>jboss-pools.txt</code>.
+	 *
+	 * @param server server to be prepared
+	 * @param listener {@link BuildListener} for logging purpose
+	 * @param timeout how long will we wait for the pools
+	 * @param minSize target number of connections of each pool
+	 * @param pools names of the pools, all pools if empty
+	 * @param targetDir directory where pool report will be stored
+	 *
+	 * @return true if all pools have been filled, false otherwise
+	 */
+	boolean prefillPools(ServerBean server, BuildListener listener,
+			int timeout, int minSize, String[] pools, File targetDir);
+}
@@ -14,19 +14,46 @@ public class Operation {
 	private final OperationEnum type;
 	private final String properties;
 	private final boolean stopOnFailure;
+	private final Integer threadDumps;
+	private final Integer threadDumpInterval;
+	private final boolean cleanStart;
+	private final String servers;
+	private final Integer batchSize;
+	private final Integer poolSize;
+	private final Integer sampleInterval;
+	private final Integer drainTimeout;
 	
 	/**
 	 * Default constructor.
 	 * 
 	 * @param value type of the operation
 	 * @param properties extra text properties
-	 * @param stopOnFailure flag used by CHECK_DEPLOY operation
+	 * @param stopOnFailure flag used by CHECK_DEPLOY and WAIT_FOR_DEPLOY operations
+	 * @param threadDumps number of thread dumps taken by START_AND_WAIT on timeout
+	 * @param threadDumpInterval interval between thread dumps in seconds
+	 * @param cleanStart flag used by START and START_AND_WAIT to clean tmp, work and data directories
+	 * @param servers names of the servers restarted by ROLLING_RESTART
+	 * @param batchSize number of servers restarted at a time by ROLLING_RESTART
+	 * @param poolSize number of connections opened in each pool by PREFILL_POOLS
+	 * @param sampleInterval interval between samples of START_MONITORING in seconds
+	 * @param drainTimeout how long SHUTDOWN waits for sessions and requests in seconds, 0 to shutdown immediately
 	 */
 	@DataBoundConstructor
-	public Operation(OperationEnum value, String properties, Boolean stopOnFailure) {
+	public Operation(OperationEnum value, String properties, Boolean stopOnFailure,
+			Integer threadDumps, Integer threadDumpInterval, Boolean cleanStart,
+			String servers, Integer batchSize, Integer poolSize, Integer sampleInterval,
+			Integer drainTimeout) {
 		this.type = value;
 		this.properties = Util.fixEmptyAndTrim(properties);
 		this.stopOnFailure = stopOnFailure!=null ? stopOnFailure : false;
+		this.threadDumps = threadDumps;
+		this.threadDumpInterval = threadDumpInterval;
+		this.cleanStart = cleanStart!=null ? cleanStart : false;
+		this.servers = Util.fixEmptyAndTrim(servers);
+		this.batchSize = batchSize;
+		this.poolSize = poolSize;
+		this.sampleInterval = sampleInterval;
+		this.drainTimeout = drainTimeout;
 	}
 
 	public OperationEnum getType() {
@@ -40,4 +67,36 @@ public class Operation {
 	public boolean isStopOnFailure() {
 		return this.stopOnFailure;
 	}
+
+	public int getThreadDumps() {
+		return this.threadDumps!=null ? this.threadDumps : 1;
+	}
+
+	public int getThreadDumpInterval() {
+		return this.threadDumpInterval!=null ? this.threadDumpInterval : 5;
+	}
+
+	public boolean isCleanStart() {
+		return this.cleanStart;
+	}
+
+	public String getServers() {
+		return this.servers;
+	}
+
+	public int getBatchSize() {
+		return this.batchSize!=null && this.batchSize > 0 ? this.batchSize : 1;
+	}
+
+	public int getPoolSize() {
+		return this.poolSize!=null && this.poolSize > 0 ? this.poolSize : 5;
+	}
+
+	public int getSampleInterval() {
+		return this.sampleInterval!=null && this.sampleInterval > 0 ? this.sampleInterval : 10;
+	}
+
+	public int getDrainTimeout() {
+		return this.drainTimeout!=null && this.drainTimeout > 0 ? this.drainTimeout : 0;
+	}
 }
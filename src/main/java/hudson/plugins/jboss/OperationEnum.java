@@ -10,9 +10,14 @@ public enum OperationEnum {
     START_AND_WAIT,
     START,
     SHUTDOWN,
-    CHECK_DEPLOY;
+    CHECK_DEPLOY,
+    WAIT_FOR_DEPLOY,
+    ROLLING_RESTART,
+    PREFILL_POOLS,
+    START_MONITORING;
     
     public static OperationEnum[] all =
-    	new OperationEnum[]{START_AND_WAIT, START, SHUTDOWN, CHECK_DEPLOY}; 
+    	new OperationEnum[]{START_AND_WAIT, START, SHUTDOWN, CHECK_DEPLOY, WAIT_FOR_DEPLOY, ROLLING_RESTART, PREFILL_POOLS,
+    		START_MONITORING}; 
 
 }
@@ -0,0 +1,157 @@
+package hudson.plugins.jboss;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.naming.Context;
+import javax.naming.NamingException;
+
+/**
+ * Registry of {@link RemoteCallStats} of remote calls and process launches made by the plugin.
+ *
+ * Stats are kept per server (<code>address:port</code>) and per type of the call,
+ * and are exported as MBeans to the platform MBean server of Jenkins.
+ */
+public final class RemoteCallMetrics {
+
+	private static final Logger LOGGER = Logger.getLogger(RemoteCallMetrics.class.getName());
+
+	/**
+	 * Types of the instrumented calls.
+	 */
+	public enum Call {
+		CONTEXT,
+		LOOKUP,
+		QUERY_NAMES,
+		GET_ATTRIBUTE,
+		INVOKE,
+		OTHER_MBEAN_CALL,
+		HTTP_MANAGEMENT,
+		PROBE,
+		LAUNCH_START,
+		LAUNCH_STOP
+	}
+
+	private static final ConcurrentMap<String, RemoteCallStats[]> servers =
+		new ConcurrentHashMap<String, RemoteCallStats[]>();
+
+	private RemoteCallMetrics() {
+		// utility class cannot be instantiated
+	}
+
+	/**
+	 * Gets stats of given call to given server.
+	 *
+	 * @param server server key, <code>address:port</code>
+	 * @param call type of the call
+	 */
+	public static RemoteCallStats of(String server, Call call) {
+		RemoteCallStats[] stats = servers.get(server);
+		if (stats == null) {
+			stats = new RemoteCallStats[Call.values().length];
+			for (int i = 0; i < stats.length; i++) {
+				stats[i] = new RemoteCallStats();
+			}
+			RemoteCallStats[] existing = servers.putIfAbsent(server, stats);
+			if (existing != null) {
+				stats = existing;
+			} else {
+				register(server, stats);
+			}
+		}
+		return stats[call.ordinal()];
+	}
+
+	/**
+	 * Gets snapshot of all servers and their stats, sorted by server.
+	 */
+	public static Map<String, RemoteCallStats[]> getServers() {
+		return new TreeMap<String, RemoteCallStats[]>(servers);
+	}
+
+	public static Call[] getCalls() {
+		return Call.values();
+	}
+
+	/**
+	 * Gets server key of given naming context.
+	 */
+	public static String serverOf(Context ctx) {
+		try {
+			return serverOf(String.valueOf(ctx.getEnvironment().get(Context.PROVIDER_URL)));
+		} catch (NamingException e) {
+			return "unknown";
+		}
+	}
+
+	/**
+	 * Gets server key of given provider URL, the first endpoint of HA-JNDI list is used.
+	 */
+	public static String serverOf(String providerUrl) {
+		int separator = providerUrl.indexOf(',');
+		return separator >= 0 ? providerUrl.substring(0, separator) : providerUrl;
+	}
+
+	/**
+	 * Wraps MBean server connection, so all calls made through it are recorded.
+	 *
+	 * @param connection connection to be instrumented
+	 * @param server server key
+	 */
+	public static MBeanServerConnection instrument(final MBeanServerConnection connection, final String server) {
+		if (connection == null) {
+			return null;
+		}
+		return (MBeanServerConnection) Proxy.newProxyInstance(
+				RemoteCallMetrics.class.getClassLoader(),
+				new Class<?>[]{MBeanServerConnection.class},
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						RemoteCallStats stats = of(server, callOf(method.getName()));
+						long start = System.nanoTime();
+						try {
+							Object result = method.invoke(connection, args);
+							stats.record(start, false);
+							return result;
+						} catch (InvocationTargetException e) {
+							stats.record(start, true);
+							throw e.getCause();
+						}
+					}
+				});
+	}
+
+	private static Call callOf(String methodName) {
+		if (methodName.startsWith("query")) {
+			return Call.QUERY_NAMES;
+		} else if (methodName.startsWith("getAttribute")) {
+			return Call.GET_ATTRIBUTE;
+		} else if (methodName.equals("invoke")) {
+			return Call.INVOKE;
+		}
+		return Call.OTHER_MBEAN_CALL;
+	}
+
+	private static void register(String server, RemoteCallStats[] stats) {
+		try {
+			for (Call call : Call.values()) {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(stats[call.ordinal()],
+						new ObjectName("hudson.plugins.jboss:type=RemoteCallStats,server="
+								+ ObjectName.quote(server) + ",call=" + call.name()));
+			}
+		} catch (Exception e) {
+			LOGGER.log(Level.WARNING, "Unable to register metrics MBeans of " + server, e);
+		}
+	}
+}
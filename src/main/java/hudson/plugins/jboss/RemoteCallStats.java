@@ -0,0 +1,70 @@
+package hudson.plugins.jboss;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency histogram of single type of remote call to single server.
+ *
+ * Recording does not allocate, so it can stay enabled permanently.
+ */
+public final class RemoteCallStats implements RemoteCallStatsMBean {
+
+	/**
+	 * Number of histogram buckets, the last one is for calls longer than 2^(BUCKETS-2) ms (~16 sec).
+	 */
+	public static final int BUCKETS = 16;
+
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+	private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * Records finished call.
+	 *
+	 * @param startNanos value of {@link System#nanoTime()} taken before the call
+	 * @param failed true if call failed
+	 */
+	public void record(long startNanos, boolean failed) {
+		long nanos = System.nanoTime() - startNanos;
+		count.incrementAndGet();
+		if (failed) {
+			errors.incrementAndGet();
+		}
+		totalNanos.addAndGet(nanos);
+		long max = maxNanos.get();
+		while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+			max = maxNanos.get();
+		}
+		long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+		histogram.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis)));
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getErrors() {
+		return errors.get();
+	}
+
+	public double getMeanMillis() {
+		long c = count.get();
+		return c == 0 ? 0 : totalNanos.get() / (c * 1000000.0);
+	}
+
+	public double getMaxMillis() {
+		return maxNanos.get() / 1000000.0;
+	}
+
+	public long[] getHistogram() {
+		long[] result = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			result[i] = histogram.get(i);
+		}
+		return result;
+	}
+}
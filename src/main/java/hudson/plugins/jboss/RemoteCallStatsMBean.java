@@ -0,0 +1,22 @@
+package hudson.plugins.jboss;
+
+/**
+ * Management interface of {@link RemoteCallStats}, exported to the platform MBean server of Jenkins
+ * as <code>hudson.plugins.jboss:type=RemoteCallStats,server=...,call=...</code>.
+ */
+public interface RemoteCallStatsMBean {
+
+	long getCount();
+
+	long getErrors();
+
+	double getMeanMillis();
+
+	double getMaxMillis();
+
+	/**
+	 * Latency histogram, bucket <code>i</code> counts calls which took less than <code>2^i</code> milliseconds,
+	 * the last bucket counts all longer calls.
+	 */
+	long[] getHistogram();
+}
@@ -0,0 +1,14 @@
+package hudson.plugins.jboss;
+
+/**
+ * Thrown when remote management call did not finish before its deadline.
+ * Reported distinctly from the server which is not started.
+ */
+public class RemoteCallTimeoutException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public RemoteCallTimeoutException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,140 @@
+package hudson.plugins.jboss;
+
+import hudson.util.DaemonThreadFactory;
+
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServerConnection;
+
+/**
+ * Runs remote management calls with enforced deadline.
+ *
+ * Calls are executed by worker threads, so the calling build thread can give up on the deadline
+ * or when the build is aborted, even if the call itself hangs in socket read.
+ * Socket timeouts of JNP (<code>jnp.timeout</code>, <code>jnp.sotimeout</code>) apply only to the naming lookup,
+ * calls of the RMIAdaptor over JRMP have no read timeout, so abandoned worker may stay blocked
+ * until the server closes the connection. Abandoned calls are logged and the number of workers is bounded,
+ * calls over the limit fail immediately with {@link RemoteCallTimeoutException}.
+ *
+ * Deadlines can be changed by system properties <code>hudson.plugins.jboss.RemoteCalls.connectTimeout</code>
+ * and <code>hudson.plugins.jboss.RemoteCalls.readTimeout</code> (seconds),
+ * the limit of workers by <code>hudson.plugins.jboss.RemoteCalls.maxWorkers</code>.
+ */
+public final class RemoteCalls {
+
+	public static final int CONNECT_TIMEOUT = Integer.getInteger(RemoteCalls.class.getName() + ".connectTimeout", 10);
+	public static final int READ_TIMEOUT = Integer.getInteger(RemoteCalls.class.getName() + ".readTimeout", 30);
+
+	public static final int MAX_WORKERS = Integer.getInteger(RemoteCalls.class.getName() + ".maxWorkers", 50);
+
+	private static final Logger LOGGER = Logger.getLogger(RemoteCalls.class.getName());
+
+	private static final ThreadPoolExecutor workers = new ThreadPoolExecutor(0, MAX_WORKERS,
+			60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new DaemonThreadFactory());
+
+	private RemoteCalls() {
+		// utility class cannot be instantiated
+	}
+
+	/**
+	 * Executes the call with deadline, context class loader of the caller is used by the call.
+	 *
+	 * @param call the remote call
+	 * @param timeout deadline in seconds
+	 * @param description description of the call used in timeout message
+	 *
+	 * @return result of the call
+	 *
+	 * @throws RemoteCallTimeoutException if deadline expired or all workers are blocked by abandoned calls
+	 * @throws InterruptedException if the caller has been interrupted, the call is cancelled
+	 * @throws Exception exception thrown by the call
+	 */
+	public static <T> T call(final Callable<T> call, int timeout, String description) throws Exception {
+		final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		Future<T> future;
+		try {
+			future = workers.submit(new Callable<T>() {
+				public T call() throws Exception {
+					Thread.currentThread().setContextClassLoader(contextClassLoader);
+					try {
+						return call.call();
+					} finally {
+						Thread.currentThread().setContextClassLoader(null);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			throw new RemoteCallTimeoutException(String.format(
+					"Remote call %s rejected, all %d workers are blocked by previous calls.", description, MAX_WORKERS));
+		}
+
+		try {
+			return future.get(timeout, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			future.cancel(true); // socket read of JRMP is not interruptible, worker may stay blocked
+			LOGGER.warning(String.format("Remote call %s abandoned after %d seconds, %d of %d workers busy.",
+					description, timeout, workers.getActiveCount(), MAX_WORKERS));
+			throw new RemoteCallTimeoutException(
+					String.format("Remote call %s timed out after %d seconds.", description, timeout));
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			throw e;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw (Exception) cause;
+		}
+	}
+
+	/**
+	 * Wraps MBean server connection, so all calls made through it have deadline of {@link #READ_TIMEOUT}.
+	 * Interrupted calls throw {@link InterruptedIOException} with interrupted flag of the thread set.
+	 *
+	 * @param connection connection to be wrapped
+	 * @param server server key used in timeout message
+	 */
+	public static MBeanServerConnection withDeadline(final MBeanServerConnection connection, final String server) {
+		if (connection == null) {
+			return null;
+		}
+		return (MBeanServerConnection) Proxy.newProxyInstance(
+				RemoteCalls.class.getClassLoader(),
+				new Class<?>[]{MBeanServerConnection.class},
+				new InvocationHandler() {
+					public Object invoke(Object proxy, final Method method, final Object[] args) throws Throwable {
+						try {
+							return call(new Callable<Object>() {
+								public Object call() throws Exception {
+									try {
+										return method.invoke(connection, args);
+									} catch (InvocationTargetException e) {
+										if (e.getCause() instanceof Error) {
+											throw (Error) e.getCause();
+										}
+										throw (Exception) e.getCause();
+									}
+								}
+							}, READ_TIMEOUT, method.getName() + " on " + server);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							throw new InterruptedIOException("Remote call " + method.getName() + " interrupted");
+						}
+					}
+				});
+	}
+}
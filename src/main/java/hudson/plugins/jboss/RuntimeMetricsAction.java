@@ -0,0 +1,169 @@
+package hudson.plugins.jboss;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Action;
+import hudson.util.ChartUtil;
+import hudson.util.Graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.FileUtils;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Build page with charts of the runtime metrics sampled by {@link RuntimeSampler}.
+ */
+public class RuntimeMetricsAction implements Action {
+
+	/**
+	 * Charts of the page, each one is list of plotted columns of the samples.
+	 */
+	public enum Chart {
+		THREADS("Connector threads", "threads", 2, 3),
+		REQUESTS("Requests per second", "requests/sec", 4, 5),
+		POOLS("Connection pools", "connections", 6, 7),
+		HEAP("Heap used", "MB", 1);
+
+		private final String title;
+		private final String unit;
+		private final int[] columns;
+
+		private Chart(String title, String unit, int... columns) {
+			this.title = title;
+			this.unit = unit;
+			this.columns = columns;
+		}
+
+		public String getTitle() {
+			return title;
+		}
+
+		/**
+		 * Columns of the requests are counters, they are plotted as rate.
+		 */
+		private boolean isRate() {
+			return this == REQUESTS;
+		}
+	}
+
+	private final List<String> servers = new ArrayList<String>();
+
+	public String getIconFileName() {
+		return "graph.gif";
+	}
+
+	public String getDisplayName() {
+		return "JBoss Runtime Metrics";
+	}
+
+	public String getUrlName() {
+		return "jboss-runtime";
+	}
+
+	public synchronized List<String> getServers() {
+		return new ArrayList<String>(servers);
+	}
+
+	synchronized void addServer(String serverName) {
+		if (!servers.contains(serverName)) {
+			servers.add(serverName);
+		}
+	}
+
+	public Chart[] getCharts() {
+		return Chart.values();
+	}
+
+	/**
+	 * Gets file with the samples of given server.
+	 */
+	static File getSamplesFile(File buildDir, String serverName) {
+		return new File(buildDir, "jboss-runtime-" + serverName.replaceAll("[^\\w.-]", "_") + ".csv");
+	}
+
+	/**
+	 * Renders chart given by <code>server</code> (index of the server) and <code>chart</code> parameters.
+	 */
+	public void doChart(StaplerRequest req, StaplerResponse rsp) throws IOException {
+		if (ChartUtil.awtProblemCause != null) {
+			rsp.sendRedirect2(req.getContextPath() + "/images/headless.png");
+			return;
+		}
+
+		AbstractBuild<?, ?> build = req.findAncestorObject(AbstractBuild.class);
+		List<String> serverNames = getServers();
+		final Chart chart;
+		String serverName;
+		try {
+			chart = Chart.valueOf(req.getParameter("chart"));
+			serverName = serverNames.get(Integer.parseInt(req.getParameter("server")));
+		} catch (RuntimeException e) {
+			rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		if (build == null) {
+			rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		final File file = getSamplesFile(build.getRootDir(), serverName);
+		if (!file.isFile()) {
+			rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		new Graph(file.lastModified(), 600, 250) {
+			@Override
+			protected JFreeChart createGraph() {
+				XYSeriesCollection dataset = new XYSeriesCollection();
+				try {
+					readSeries(file, chart, dataset);
+				} catch (IOException e) {
+					// chart of the samples read so far
+				}
+				return ChartFactory.createXYLineChart(chart.getTitle(), "seconds", chart.unit,
+						dataset, PlotOrientation.VERTICAL, true, false, false);
+			}
+		}.doPng(req, rsp);
+	}
+
+	private static void readSeries(File file, Chart chart, XYSeriesCollection dataset) throws IOException {
+		XYSeries[] series = new XYSeries[chart.columns.length];
+		for (int i = 0; i < series.length; i++) {
+			series[i] = new XYSeries(RuntimeSampler.COLUMNS[chart.columns[i]]);
+			dataset.addSeries(series[i]);
+		}
+
+		long[] previous = null;
+		for (Object line : FileUtils.readLines(file)) {
+			String[] fields = ((String) line).split(",");
+			if (((String) line).startsWith("#") || fields.length != RuntimeSampler.COLUMNS.length) {
+				continue;
+			}
+			long[] sample = new long[fields.length];
+			for (int i = 0; i < fields.length; i++) {
+				sample[i] = Long.parseLong(fields[i]);
+			}
+			for (int i = 0; i < series.length; i++) {
+				int column = chart.columns[i];
+				if (!chart.isRate()) {
+					series[i].add(sample[0], sample[column]);
+				} else if (previous != null && sample[0] > previous[0] && sample[column] >= previous[column]) {
+					// counters are reset by restart of the server, such interval is skipped
+					series[i].add(sample[0], (double) (sample[column] - previous[column]) / (sample[0] - previous[0]));
+				}
+			}
+			previous = sample;
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package hudson.plugins.jboss;
+
+import hudson.Extension;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.plugins.jboss.JBossBuilder.ServerBean;
+import hudson.util.DaemonThreadFactory;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+
+/**
+ * Samples runtime metrics of the server in background while the rest of the build runs.
+ *
+ * Each sample reads heap, connector thread pools, request processors and JCA pools
+ * over one MBean connection, kept open between the samples and reopened after failure.
+ * Samples are appended to <code>jboss-runtime-&lt;server&gt;.csv</code> in the build directory
+ * and rendered by {@link RuntimeMetricsAction}. Sampling is stopped when the build completes.
+ */
+public final class RuntimeSampler implements Runnable {
+
+	private static final Logger LOGGER = Logger.getLogger(RuntimeSampler.class.getName());
+
+	/**
+	 * Columns of the samples, time is in seconds since start of the sampling.
+	 */
+	static final String[] COLUMNS = {"time", "heapUsedMB", "threadsBusy", "threadsMax",
+		"requests", "errors", "poolInUse", "poolConnections"};
+
+	private static final Map<AbstractBuild<?, ?>, List<RuntimeSampler>> running =
+		new HashMap<AbstractBuild<?, ?>, List<RuntimeSampler>>();
+
+	private final ServerBean server;
+	private final BuildListener listener;
+	private final ClassLoader classLoader;
+	private final File file;
+	private final long startTime = System.currentTimeMillis();
+	private final ScheduledExecutorService executor =
+		Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory());
+
+	private MBeanServerConnection connection;
+	private Set<ObjectName> threadPools;
+	private Set<ObjectName> requestProcessors;
+	private Set<ObjectName> connectionPools;
+	private int samples;
+	private int failures;
+
+	private RuntimeSampler(ServerBean server, File file, BuildListener listener) {
+		this.server = server;
+		this.file = file;
+		this.listener = listener;
+		this.classLoader = Thread.currentThread().getContextClassLoader();
+	}
+
+	/**
+	 * Starts sampling of the server, sampling already running for the server in the build is kept.
+	 *
+	 * @param build the build, sampling is stopped when it completes
+	 * @param server server to be sampled
+	 * @param interval interval between samples in seconds
+	 * @param listener for logging purpose
+	 */
+	public static void start(AbstractBuild<?, ?> build, ServerBean server, int interval,
+			BuildListener listener) throws IOException {
+		synchronized (running) {
+			List<RuntimeSampler> samplers = running.get(build);
+			if (samplers == null) {
+				samplers = new ArrayList<RuntimeSampler>();
+				running.put(build, samplers);
+			}
+			for (RuntimeSampler sampler : samplers) {
+				if (sampler.server.getServerName().equals(server.getServerName())) {
+					listener.getLogger().println("Runtime metrics of the server are already sampled.");
+					return;
+				}
+			}
+
+			RuntimeMetricsAction action = build.getAction(RuntimeMetricsAction.class);
+			if (action == null) {
+				action = new RuntimeMetricsAction();
+				build.addAction(action);
+			}
+			action.addServer(server.getServerName());
+
+			File file = RuntimeMetricsAction.getSamplesFile(build.getRootDir(), server.getServerName());
+			FileWriter header = new FileWriter(file);
+			try {
+				header.write("#" + join(COLUMNS) + "\n");
+			} finally {
+				header.close();
+			}
+
+			RuntimeSampler sampler = new RuntimeSampler(server, file, listener);
+			sampler.executor.scheduleWithFixedDelay(sampler, 0, interval, TimeUnit.SECONDS);
+			samplers.add(sampler);
+		}
+		listener.getLogger().println(String.format("Sampling runtime metrics every %d seconds to '%s' until the build completes.",
+				interval, RuntimeMetricsAction.getSamplesFile(build.getRootDir(), server.getServerName()).getName()));
+	}
+
+	/**
+	 * Stops all samplers of the build.
+	 */
+	static void stop(AbstractBuild<?, ?> build, TaskListener listener) {
+		List<RuntimeSampler> samplers;
+		synchronized (running) {
+			samplers = running.remove(build);
+		}
+		if (samplers == null) {
+			return;
+		}
+		for (RuntimeSampler sampler : samplers) {
+			sampler.executor.shutdownNow();
+			try {
+				sampler.executor.awaitTermination(RemoteCalls.READ_TIMEOUT, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			listener.getLogger().println(String.format("Runtime sampling of %s stopped, %d sample(s) stored, %d failed.",
+					sampler.server.getServerName(), sampler.samples, sampler.failures));
+		}
+	}
+
+	public void run() {
+		Thread.currentThread().setContextClassLoader(classLoader);
+		try {
+			if (connection == null) {
+				connect();
+			}
+			long[] sample = sample();
+			Writer writer = new FileWriter(file, true);
+			try {
+				StringBuilder line = new StringBuilder();
+				for (long value : sample) {
+					line.append(line.length() > 0 ? "," : "").append(value);
+				}
+				writer.write(line.append('\n').toString());
+			} finally {
+				writer.close();
+			}
+			samples++;
+		} catch (Exception e) {
+			// reconnect with the next sample, server may be restarted by the build
+			connection = null;
+			failures++;
+			LOGGER.log(Level.FINE, "Unable to sample runtime metrics of " + server.getServerName(), e);
+		}
+	}
+
+	private void connect() throws Exception {
+		MBeanServerConnection newConnection = JMXUtils.getMBeanServer(server.getAddress(), server.getJndiPort(),
+				listener, 5);
+		if (newConnection == null) {
+			throw new IllegalStateException("Server " + server.getServerName() + " is not running.");
+		}
+		threadPools = newConnection.queryNames(new ObjectName("jboss.web:type=ThreadPool,*"), null);
+		requestProcessors = newConnection.queryNames(new ObjectName("jboss.web:type=GlobalRequestProcessor,*"), null);
+		connectionPools = newConnection.queryNames(new ObjectName(ConnectionPools.POOLS), null);
+		connection = newConnection;
+	}
+
+	private long[] sample() throws Exception {
+		long[] sample = new long[COLUMNS.length];
+		sample[0] = (System.currentTimeMillis() - startTime) / 1000;
+
+		Map<String, Object> memory = JMXUtils.getAttributes(connection,
+				new ObjectName("jboss.system:type=ServerInfo"), new String[]{"TotalMemory", "FreeMemory"});
+		sample[1] = (toLong(memory.get("TotalMemory")) - toLong(memory.get("FreeMemory"))) / (1024 * 1024);
+
+		for (ObjectName name : threadPools) {
+			Map<String, Object> values = JMXUtils.getAttributes(connection, name,
+					new String[]{"currentThreadsBusy", "maxThreads"});
+			sample[2] += toLong(values.get("currentThreadsBusy"));
+			sample[3] += toLong(values.get("maxThreads"));
+		}
+		for (ObjectName name : requestProcessors) {
+			Map<String, Object> values = JMXUtils.getAttributes(connection, name,
+					new String[]{"requestCount", "errorCount"});
+			sample[4] += toLong(values.get("requestCount"));
+			sample[5] += toLong(values.get("errorCount"));
+		}
+		for (ObjectName name : connectionPools) {
+			Map<String, Object> values = JMXUtils.getAttributes(connection, name,
+					new String[]{"InUseConnectionCount", "ConnectionCount"});
+			sample[6] += toLong(values.get("InUseConnectionCount"));
+			sample[7] += toLong(values.get("ConnectionCount"));
+		}
+		return sample;
+	}
+
+	private static long toLong(Object value) {
+		return value instanceof Number ? ((Number) value).longValue() : 0;
+	}
+
+	private static String join(String[] values) {
+		StringBuilder joined = new StringBuilder();
+		for (String value : values) {
+			joined.append(joined.length() > 0 ? "," : "").append(value);
+		}
+		return joined.toString();
+	}
+
+	/**
+	 * Stops sampling when the build completes.
+	 */
+	@Extension
+	public static class BuildCompletionListener extends RunListener<AbstractBuild> {
+
+		public BuildCompletionListener() {
+			super(AbstractBuild.class);
+		}
+
+		@Override
+		public void onCompleted(AbstractBuild build, TaskListener listener) {
+			stop(build, listener);
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package hudson.plugins.jboss;
+
+import hudson.model.BuildListener;
+import hudson.plugins.jboss.JBossBuilder.ServerBean;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coordinates start and stop of the same server requested by concurrent builds.
+ *
+ * Concurrent starts are coalesced into single launch and all waiting builds share its result.
+ * Stop does not begin while start is in flight and vice versa.
+ * Servers are identified by address and the port of their management connector
+ * (JNDI port for JNP, management port for HTTP), since those are the resources which clash.
+ */
+public final class ServerCoordinator {
+
+	private static final Map<String, ServerCoordinator> coordinators = new HashMap<String, ServerCoordinator>();
+
+	private final ReentrantLock lifecycle = new ReentrantLock(true);
+
+	/**
+	 * Start in flight, guarded by this.
+	 */
+	private FutureTask<Boolean> pendingStart;
+	private boolean pendingStartWaits;
+
+	private ServerCoordinator() {
+	}
+
+	/**
+	 * Gets key of given server, <code>address:port</code> of its management connector.
+	 * The key identifies the server in {@link RemoteCallMetrics} too, so launches and management calls
+	 * of the same server are reported together.
+	 */
+	public static String keyOf(ServerBean server) {
+		return server.getAddress() + ":"
+				+ (server.getConnectorType() == ConnectorEnum.HTTP ? server.getManagementPort() : server.getJndiPort());
+	}
+
+	/**
+	 * Gets coordinator for given server.
+	 */
+	public static ServerCoordinator forServer(ServerBean server) {
+		String key = keyOf(server);
+		synchronized (coordinators) {
+			ServerCoordinator coordinator = coordinators.get(key);
+			if (coordinator == null) {
+				coordinator = new ServerCoordinator();
+				coordinators.put(key, coordinator);
+			}
+			return coordinator;
+		}
+	}
+
+	/**
+	 * Starts the server or joins the start which is already in flight.
+	 * If the joined start is abandoned by the other build (it has been interrupted), the start is attempted again.
+	 *
+	 * @param waitsForReadiness true if caller needs the server to be ready, not only launched
+	 * @param action start action, executed only if no other start is in flight
+	 * @param listener for logging purpose
+	 *
+	 * @return result of the start, or null if caller waits for readiness but joined start which only launched the server
+	 */
+	public Boolean start(boolean waitsForReadiness, Callable<Boolean> action, BuildListener listener)
+			throws IOException, InterruptedException {
+
+		long queueTime = System.currentTimeMillis();
+		while (true) {
+			FutureTask<Boolean> task;
+			boolean leader = false;
+			boolean joinedWaits;
+			synchronized (this) {
+				if (pendingStart == null) {
+					pendingStart = new FutureTask<Boolean>(action);
+					pendingStartWaits = waitsForReadiness;
+					leader = true;
+				}
+				task = pendingStart;
+				joinedWaits = pendingStartWaits;
+			}
+
+			if (leader) {
+				try {
+					lock(listener);
+					try {
+						task.run();
+					} finally {
+						lifecycle.unlock();
+					}
+				} finally {
+					task.cancel(false); // no-op if it has been run
+					synchronized (this) {
+						pendingStart = null;
+					}
+				}
+			} else {
+				listener.getLogger().println("Start of this server is already in progress by another build, waiting for its result...");
+			}
+
+			try {
+				Boolean result = task.get();
+				if (!leader) {
+					listener.getLogger().println(String.format("Shared start result %s after %.1f sec in queue.",
+							result, (System.currentTimeMillis() - queueTime) / 1000.0));
+					if (waitsForReadiness && !joinedWaits) {
+						return null;
+					}
+				}
+				return result;
+			} catch (CancellationException e) {
+				// only joined start can be cancelled, its leader has been interrupted before launch
+				listener.getLogger().println("Start of this server has been abandoned by another build, starting again...");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof InterruptedException && !leader) {
+					// interruption of the other build is not failure of this one
+					listener.getLogger().println("Start of this server has been interrupted in another build, starting again...");
+					continue;
+				}
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				if (cause instanceof InterruptedException) {
+					throw (InterruptedException) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+
+	/**
+	 * Stops the server when no start or other stop is in flight.
+	 *
+	 * @param action stop action
+	 * @param listener for logging purpose
+	 *
+	 * @return result of the stop
+	 */
+	public boolean stop(Callable<Boolean> action, BuildListener listener)
+			throws IOException, InterruptedException {
+		lock(listener);
+		try {
+			return action.call();
+		} catch (IOException e) {
+			throw e;
+		} catch (InterruptedException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		} finally {
+			lifecycle.unlock();
+		}
+	}
+
+	private void lock(BuildListener listener) throws InterruptedException {
+		if (lifecycle.tryLock()) {
+			return;
+		}
+		listener.getLogger().println("Start or stop of this server is in progress by another build, waiting...");
+		long queueTime = System.currentTimeMillis();
+		lifecycle.lockInterruptibly();
+		listener.getLogger().println(String.format("Waited %.1f sec in queue.",
+				(System.currentTimeMillis() - queueTime) / 1000.0));
+	}
+}
@@ -0,0 +1,37 @@
+package hudson.plugins.jboss;
+
+import hudson.model.BuildListener;
+
+/**
+ * Base of the trackers of operations waiting with timeout (WAIT_FOR_DEPLOY, drain),
+ * measures time from creation of the tracker and logs to the build.
+ */
+abstract class TimedProgress {
+
+	private final BuildListener listener;
+	private final long startTime = System.currentTimeMillis();
+
+	TimedProgress(BuildListener listener) {
+		this.listener = listener;
+	}
+
+	boolean isExpired(int timeout) {
+		return System.currentTimeMillis() - startTime >= timeout * 1000L;
+	}
+
+	/**
+	 * Logs that the timeout has expired and what has not been finished.
+	 */
+	abstract void expired(int timeout);
+
+	/**
+	 * Gets seconds elapsed from the start.
+	 */
+	double elapsed() {
+		return (System.currentTimeMillis() - startTime) / 1000.0;
+	}
+
+	void log(String format, Object... args) {
+		listener.getLogger().println(String.format(format, args));
+	}
+}
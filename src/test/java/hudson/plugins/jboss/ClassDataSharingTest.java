@@ -0,0 +1,105 @@
+package hudson.plugins.jboss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import hudson.EnvVars;
+import hudson.model.StreamBuildListener;
+import hudson.plugins.jboss.JBossBuilder.ServerBean;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of {@link ClassDataSharing} options and startup time recording.
+ */
+public class ClassDataSharingTest {
+
+	private static final String RUN_CONF = "if [ \"x$JAVA_OPTS\" = \"x\" ]; then\n"
+			+ "   JAVA_OPTS=\"-Xms128m -Xmx512m -Dsun.rmi.dgc.client.gcInterval=3600000\"\n"
+			+ "fi\n"
+			+ "JAVA_OPTS=\"$JAVA_OPTS -Djava.net.preferIPv4Stack=true\"\n";
+
+	private File homeDir;
+	private File javaHome;
+	private ServerBean server;
+	private ByteArrayOutputStream log;
+	private StreamBuildListener listener;
+
+	@Before
+	public void setUp() throws Exception {
+		homeDir = File.createTempFile("jboss-home", "");
+		homeDir.delete();
+		new File(homeDir, "server/default/lib").mkdirs();
+		FileUtils.writeStringToFile(new File(homeDir, "bin/run.conf"), RUN_CONF);
+		javaHome = new File(homeDir, "jdk");
+		javaHome.mkdirs();
+		server = new ServerBean("default", homeDir.getAbsolutePath(), 1099, "127.0.0.1", 60, 0, true);
+		log = new ByteArrayOutputStream();
+		listener = new StreamBuildListener(log);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(homeDir);
+	}
+
+	private ClassDataSharing cds(String javaVersion, String javaOpts) throws Exception {
+		FileUtils.writeStringToFile(new File(javaHome, "release"), "JAVA_VERSION=\"" + javaVersion + "\"\n");
+		EnvVars env = new EnvVars();
+		env.put("JAVA_HOME", javaHome.getAbsolutePath());
+		if (javaOpts != null) {
+			env.put("JAVA_OPTS", javaOpts);
+		}
+		return new ClassDataSharing(server, env);
+	}
+
+	@Test
+	public void runConfDefaultsAreMerged() throws Exception {
+		ClassDataSharing cds = cds("17.0.2", null);
+		String options = cds.prepare(listener);
+
+		assertTrue(options, options.startsWith("-XX:ArchiveClassesAtExit="));
+		assertEquals("-Xms128m -Xmx512m -Dsun.rmi.dgc.client.gcInterval=3600000 " + options,
+				cds.javaOpts(new EnvVars(), options, true));
+		assertEquals(options, cds.javaOpts(new EnvVars(), options, false));
+	}
+
+	@Test
+	public void javaOptsOfBuildAreKept() throws Exception {
+		EnvVars env = new EnvVars();
+		env.put("JAVA_OPTS", "-Xmx1g");
+
+		assertEquals("-Xmx1g -Xshare:auto", cds("17", "-Xmx1g").javaOpts(env, "-Xshare:auto", true));
+	}
+
+	@Test
+	public void startIsRecordedByPreparedMode() throws Exception {
+		ClassDataSharing cds = cds("17", null);
+		String options = cds.prepare(listener);
+		// archive is written on exit of the server, after the start has been prepared without it
+		FileUtils.writeStringToFile(new File(options.substring("-XX:ArchiveClassesAtExit=".length())), "archive");
+		assertTrue(cds.isArchiveAvailable());
+
+		cds.recordStartupTime(42000, listener);
+
+		assertTrue(log.toString(), log.toString().contains("CDS: last startup with archive n/a, without archive 42.0 sec"));
+	}
+
+	@Test
+	public void oldJdkIsReportedAsUnsupported() throws Exception {
+		ClassDataSharing cds = cds("1.8.0_202", null);
+
+		assertEquals(null, cds.prepare(listener));
+		cds.recordStartupTime(42000, listener);
+
+		assertTrue(log.toString(), log.toString().contains("CDS: not supported by JDK 1.8.0_202"));
+		assertFalse(log.toString(), log.toString().contains("last startup"));
+	}
+}
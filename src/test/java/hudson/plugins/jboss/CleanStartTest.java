@@ -0,0 +1,43 @@
+package hudson.plugins.jboss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+/**
+ * Tests of deletion of the trees moved aside by {@link CleanStart}.
+ */
+public class CleanStartTest {
+
+	@Test
+	public void linksReclaimNothingAndTargetsAreKept() throws Exception {
+		if (File.pathSeparatorChar != ':') {
+			return; // links are created by ln
+		}
+		File root = File.createTempFile("clean-start", "");
+		root.delete();
+		File target = new File(root, "shared/big.bin");
+		FileUtils.writeStringToFile(target, new String(new char[4096]));
+		File tree = new File(root, "tmp.deleted-1");
+		FileUtils.writeStringToFile(new File(tree, "deploy/app.war"), new String(new char[1000]));
+		link(target, new File(tree, "big.bin"));
+		link(target.getParentFile(), new File(tree, "shared"));
+
+		assertEquals(1000, CleanStart.delete(tree));
+		assertFalse(tree.exists());
+		assertTrue(target.isFile());
+		assertEquals(4096, target.length());
+
+		CleanStart.delete(root);
+	}
+
+	private static void link(File target, File link) throws Exception {
+		Process ln = new ProcessBuilder("ln", "-s", target.getAbsolutePath(), link.getAbsolutePath()).start();
+		assertEquals(0, ln.waitFor());
+	}
+}
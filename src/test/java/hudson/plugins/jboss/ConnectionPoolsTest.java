@@ -0,0 +1,186 @@
+package hudson.plugins.jboss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import hudson.model.StreamBuildListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of {@link ConnectionPools} against in-process MBean server with fake pools.
+ */
+public class ConnectionPoolsTest {
+
+	public interface FakePoolMBean {
+		int getMinSize();
+		void setMinSize(int minSize);
+		int getMaxSize();
+		int getConnectionCount();
+		int getInUseConnectionCount();
+		long getConnectionCreatedCount();
+		void prefill();
+	}
+
+	/**
+	 * Pool filled to its minimal size by prefill, unless it is broken.
+	 * Opening of each connection takes given time.
+	 */
+	public static class FakePool implements FakePoolMBean {
+		private final int maxSize;
+		private final boolean broken;
+		private final long connectMillis;
+		private int minSize;
+		private int connections;
+		private long created;
+
+		FakePool(int minSize, int maxSize, boolean broken, long connectMillis) {
+			this.minSize = minSize;
+			this.maxSize = maxSize;
+			this.broken = broken;
+			this.connectMillis = connectMillis;
+		}
+
+		public int getMinSize() {
+			return minSize;
+		}
+
+		public void setMinSize(int minSize) {
+			this.minSize = minSize;
+		}
+
+		public int getMaxSize() {
+			return maxSize;
+		}
+
+		public int getConnectionCount() {
+			return connections;
+		}
+
+		public int getInUseConnectionCount() {
+			return 0;
+		}
+
+		public long getConnectionCreatedCount() {
+			return created;
+		}
+
+		public void prefill() {
+			while (!broken && connections < minSize) {
+				try {
+					Thread.sleep(connectMillis);
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+				created++;
+				connections++;
+			}
+		}
+	}
+
+	private MBeanServer server;
+	private ByteArrayOutputStream log;
+	private StreamBuildListener listener;
+	private File targetDir;
+
+	@Before
+	public void setUp() throws Exception {
+		server = MBeanServerFactory.newMBeanServer();
+		log = new ByteArrayOutputStream();
+		listener = new StreamBuildListener(log);
+		targetDir = File.createTempFile("jboss-pools", "");
+		targetDir.delete();
+		targetDir.mkdir();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(targetDir);
+	}
+
+	private FakePool register(String name, int minSize, int maxSize, boolean broken) throws Exception {
+		return register(name, minSize, maxSize, broken, 0);
+	}
+
+	private FakePool register(String name, int minSize, int maxSize, boolean broken, long connectMillis)
+			throws Exception {
+		FakePool pool = new FakePool(minSize, maxSize, broken, connectMillis);
+		server.registerMBean(pool, new ObjectName("jboss.jca:service=ManagedConnectionPool,name=" + name));
+		return pool;
+	}
+
+	private String report() throws Exception {
+		return FileUtils.readFileToString(new File(targetDir, "jboss-pools.txt"));
+	}
+
+	@Test
+	public void targetIsCappedByMaxSize() throws Exception {
+		FakePool small = register("SmallDS", 0, 3, false);
+		FakePool large = register("LargeDS", 0, 20, false);
+
+		assertTrue(ConnectionPools.prefill(server, listener, 5, 5, new String[0], targetDir));
+
+		assertEquals(3, small.getMinSize());
+		assertEquals(3, small.getConnectionCount());
+		assertEquals(5, large.getMinSize());
+		assertEquals(5, large.getConnectionCount());
+		assertTrue(report().contains("SmallDS: 3 connection(s), 0 in use, 3 created"));
+		assertTrue(report().contains("LargeDS: 5 connection(s), 0 in use, 5 created"));
+	}
+
+	@Test
+	public void synchronousPrefillIsTimed() throws Exception {
+		register("SlowDS", 0, 20, false, 100);
+
+		assertTrue(ConnectionPools.prefill(server, listener, 5, 3, new String[0], targetDir));
+
+		Matcher matcher = Pattern.compile("SlowDS: 3 connection\\(s\\), 0 in use, 3 created in [\\d.]+ sec \\(([\\d.]+) ms per connection\\)")
+				.matcher(report());
+		assertTrue(report(), matcher.find());
+		assertTrue(report(), Double.parseDouble(matcher.group(1)) >= 90);
+	}
+
+	@Test
+	public void minSizeIsNotLowered() throws Exception {
+		FakePool pool = register("DefaultDS", 8, 20, false);
+
+		assertTrue(ConnectionPools.prefill(server, listener, 5, 5, new String[0], targetDir));
+
+		assertEquals(8, pool.getMinSize());
+		assertEquals(8, pool.getConnectionCount());
+	}
+
+	@Test
+	public void missingPoolIsReported() throws Exception {
+		FakePool pool = register("DefaultDS", 0, 20, false);
+
+		assertFalse(ConnectionPools.prefill(server, listener, 5, 5, new String[]{"DefaultDS", "OtherDS"}, targetDir));
+
+		assertTrue(log.toString().contains("Connection pool 'OtherDS' not found."));
+		assertEquals("pools are not touched when any pool is missing", 0, pool.getConnectionCount());
+	}
+
+	@Test
+	public void unfilledPoolIsReportedAfterTimeout() throws Exception {
+		register("DefaultDS", 0, 20, false);
+		register("BrokenDS", 0, 20, true);
+
+		assertFalse(ConnectionPools.prefill(server, listener, 1, 2, new String[0], targetDir));
+
+		assertTrue(report().contains("DefaultDS: 2 connection(s)"));
+		assertTrue(report().contains("BrokenDS: 0 of 2 connection(s) after timeout (1 sec), FAILED"));
+	}
+}
@@ -0,0 +1,201 @@
+package hudson.plugins.jboss;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import hudson.model.StreamBuildListener;
+import hudson.plugins.jboss.JBossBuilder.ServerBean;
+import hudson.util.Secret;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.security.MessageDigest;
+import java.util.Map;
+
+import net.sf.json.JSONObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.Authenticator;
+import com.sun.net.httpserver.BasicAuthenticator;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpPrincipal;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests of {@link HttpManagementConnector} against stub HTTP management endpoint.
+ */
+public class HttpManagementConnectorTest {
+
+	private static final String RUNNING = "{\"outcome\":\"success\",\"result\":\"running\"}";
+
+	private HttpServer httpServer;
+	private HttpContext context;
+	private ByteArrayOutputStream log;
+	private StreamBuildListener listener;
+
+	private int responseCode;
+	private String contentType;
+	private String responseBody;
+
+	private final HttpManagementConnector connector = new HttpManagementConnector() {
+		@Override
+		protected String getManagementUrl(ServerBean server) {
+			return "http://127.0.0.1:" + httpServer.getAddress().getPort() + "/management";
+		}
+	};
+
+	@Before
+	public void setUp() throws Exception {
+		httpServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		context = httpServer.createContext("/management", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] body = responseBody.getBytes("UTF-8");
+				exchange.getResponseHeaders().add("Content-Type", contentType);
+				exchange.sendResponseHeaders(responseCode, body.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(body);
+				out.close();
+			}
+		});
+		httpServer.start();
+		log = new ByteArrayOutputStream();
+		listener = new StreamBuildListener(log);
+		respond(200, "application/json", RUNNING);
+	}
+
+	@After
+	public void tearDown() {
+		httpServer.stop(0);
+	}
+
+	private void respond(int code, String type, String body) {
+		responseCode = code;
+		contentType = type;
+		responseBody = body;
+	}
+
+	private static ServerBean server(String user, String password) {
+		return new ServerBean("", "", "127.0.0.1", "wildfly", 1099, 5, 1,
+				ConnectorEnum.HTTP, 9990, user, Secret.fromString(password));
+	}
+
+	@Test
+	public void runningServerIsReported() {
+		assertTrue(connector.checkServerStatus(server(null, null), listener, 1, false));
+	}
+
+	@Test
+	public void unauthorizedResponseIsConnectionError() {
+		respond(401, "text/html", "<html><body>Unauthorized</body></html>");
+
+		assertFalse(connector.checkServerStatus(server(null, null), listener, 1, true));
+		try {
+			connector.checkServerStatus(server(null, null), listener, 1, false);
+			fail("401 must be reported");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof IOException);
+			assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("HTTP 401"));
+		}
+	}
+
+	@Test
+	public void timeoutIsIgnoredLikeByJnpConnector() {
+		HttpManagementConnector hanging = new HttpManagementConnector() {
+			@Override
+			protected JSONObject execute(ServerBean server, JSONObject operation, int timeout) {
+				throw new RemoteCallTimeoutException("read-attribute timed out");
+			}
+		};
+
+		assertFalse(hanging.checkServerStatus(server(null, null), listener, 1, true));
+		try {
+			hanging.checkServerStatus(server(null, null), listener, 1, false);
+			fail("timeout must be reported");
+		} catch (RemoteCallTimeoutException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void errorPageOfProxyIsConnectionError() {
+		respond(502, "text/html", "<html><body>Bad Gateway</body></html>");
+
+		assertFalse(connector.checkDeploy(server(null, null), listener, 1, new String[]{"app.war"}));
+		assertTrue(log.toString(), log.toString().contains("HTTP 502"));
+	}
+
+	@Test
+	public void credentialsAreSentToManagementEndpoint() {
+		context.setAuthenticator(new BasicAuthenticator("ManagementRealm") {
+			@Override
+			public boolean checkCredentials(String user, String password) {
+				return "admin".equals(user) && "secret".equals(password);
+			}
+		});
+		java.net.Authenticator jenkinsAuthenticator = java.net.Authenticator.getDefault();
+
+		assertTrue(connector.checkServerStatus(server("admin", "secret"), listener, 1, false));
+		assertSame("default authenticator of the JVM is not touched",
+				jenkinsAuthenticator, java.net.Authenticator.getDefault());
+	}
+
+	@Test
+	public void digestChallengeIsAnswered() {
+		context.setAuthenticator(new Authenticator() {
+			@Override
+			public Result authenticate(HttpExchange exchange) {
+				String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+				if (authorization != null) {
+					Map<String, String> values = ManagementAuthenticator.parse(authorization.substring("Digest ".length()));
+					String ha1 = md5("admin:ManagementRealm:secret");
+					String ha2 = md5("POST:" + values.get("uri"));
+					String expected = md5(ha1 + ":4f2d1c:" + values.get("nc") + ":" + values.get("cnonce") + ":auth:" + ha2);
+					if (authorization.startsWith("Digest ") && "admin".equals(values.get("username"))
+							&& expected.equals(values.get("response"))) {
+						return new Success(new HttpPrincipal("admin", "ManagementRealm"));
+					}
+				}
+				exchange.getResponseHeaders().add("WWW-Authenticate",
+						"Digest realm=\"ManagementRealm\", nonce=\"4f2d1c\", qop=\"auth\", algorithm=MD5");
+				return new Retry(401);
+			}
+		});
+
+		assertTrue(connector.checkServerStatus(server("admin", "secret"), listener, 1, false));
+		assertFalse(connector.checkServerStatus(server("admin", "wrong"), listener, 1, true));
+	}
+
+	private static String md5(String text) {
+		try {
+			StringBuilder hex = new StringBuilder();
+			for (byte b : MessageDigest.getInstance("MD5").digest(text.getBytes("UTF-8"))) {
+				hex.append(String.format("%02x", b & 0xff));
+			}
+			return hex.toString();
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Test
+	public void deploymentIsNotVerifiedOnStartingServer() {
+		respond(200, "application/json", "{\"outcome\":\"success\",\"result\":{"
+				+ "\"step-1\":{\"outcome\":\"success\",\"result\":\"starting\"},"
+				+ "\"step-2\":{\"outcome\":\"success\",\"result\":\"OK\"}}}");
+		assertFalse(connector.checkDeploy(server(null, null), listener, 1, new String[]{"app.war"}));
+
+		respond(200, "application/json", "{\"outcome\":\"success\",\"result\":{"
+				+ "\"step-1\":{\"outcome\":\"success\",\"result\":\"running\"},"
+				+ "\"step-2\":{\"outcome\":\"success\",\"result\":\"OK\"}}}");
+		assertTrue(connector.checkDeploy(server(null, null), listener, 1, new String[]{"app.war"}));
+	}
+}
@@ -0,0 +1,49 @@
+package hudson.plugins.jboss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link ManagementAuthenticator} against example of RFC 2617.
+ */
+public class ManagementAuthenticatorTest {
+
+	private static final String CHALLENGE = "realm=\"testrealm@host.com\", qop=\"auth,auth-int\", "
+			+ "nonce=\"dcd98b7102dd2f0e8b11d0f600bfb0c093\", opaque=\"5ccc069c403ebaf9f0171e9517f40e41\"";
+
+	@Test
+	public void digestOfRfcExample() {
+		Map<String, String> challenge = ManagementAuthenticator.parse(CHALLENGE);
+
+		String authorization = ManagementAuthenticator.digest(challenge, "GET", "/dir/index.html",
+				"Mufasa", "Circle Of Life", "0a4f113b");
+
+		assertTrue(authorization, authorization.contains("response=\"6629fae49393a05397450978507c4ef1\""));
+		assertTrue(authorization, authorization.contains("qop=auth, nc=00000001, cnonce=\"0a4f113b\""));
+		assertTrue(authorization, authorization.contains("opaque=\"5ccc069c403ebaf9f0171e9517f40e41\""));
+	}
+
+	@Test
+	public void digestIsPreferredToBasic() {
+		String authorization = ManagementAuthenticator.authorization(
+				Arrays.asList("Basic realm=\"ManagementRealm\"", "Digest " + CHALLENGE), "POST", "/management",
+				"admin", "secret");
+
+		assertTrue(authorization, authorization.startsWith("Digest username=\"admin\""));
+	}
+
+	@Test
+	public void basicAndUnknownSchemes() {
+		assertEquals("Basic YWRtaW46c2VjcmV0", ManagementAuthenticator.authorization(
+				Arrays.asList("Basic realm=\"ManagementRealm\""), "POST", "/management", "admin", "secret"));
+		assertNull(ManagementAuthenticator.authorization(
+				Arrays.asList("Negotiate"), "POST", "/management", "admin", "secret"));
+		assertNull(ManagementAuthenticator.authorization(null, "POST", "/management", "admin", "secret"));
+	}
+}
@@ -0,0 +1,175 @@
+package hudson.plugins.jboss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import hudson.model.StreamBuildListener;
+import hudson.plugins.jboss.JBossBuilder.ServerBean;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link ServerCoordinator} with concurrent builds held by latches.
+ */
+public class ServerCoordinatorTest {
+
+	private static final AtomicInteger ports = new AtomicInteger(11099);
+
+	private final ServerCoordinator coordinator = ServerCoordinator.forServer(
+			new ServerBean("default", "", ports.getAndIncrement(), "127.0.0.1", 60, 0, false));
+
+	private final AtomicInteger launches = new AtomicInteger();
+	private final CountDownLatch launched = new CountDownLatch(1);
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	/**
+	 * Launch of the server, held until released, interruptible.
+	 */
+	private final Callable<Boolean> launch = new Callable<Boolean>() {
+		public Boolean call() throws InterruptedException {
+			launches.incrementAndGet();
+			launched.countDown();
+			release.await();
+			return Boolean.TRUE;
+		}
+	};
+
+	/**
+	 * Build step calling the coordinator in its own thread.
+	 */
+	private abstract class Build extends Thread {
+		final ByteArrayOutputStream log = new ByteArrayOutputStream();
+		final StreamBuildListener listener = new StreamBuildListener(log);
+		Object result;
+		Exception error;
+
+		abstract Object perform() throws Exception;
+
+		@Override
+		public void run() {
+			try {
+				result = perform();
+			} catch (Exception e) {
+				error = e;
+			}
+		}
+
+		Build started() {
+			start();
+			return this;
+		}
+
+		Build finished() throws InterruptedException {
+			join(10000);
+			assertFalse("build finished", isAlive());
+			return this;
+		}
+
+		/**
+		 * Waits until the build logs given message, i.e. it is blocked by the coordinator.
+		 */
+		void awaitLog(String message) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + 10000;
+			while (!log.toString().contains(message)) {
+				assertTrue("build logged: " + message, System.currentTimeMillis() < deadline);
+				Thread.sleep(10);
+			}
+		}
+	}
+
+	private Build start(final boolean waitsForReadiness) {
+		return new Build() {
+			@Override
+			Object perform() throws Exception {
+				return coordinator.start(waitsForReadiness, launch, listener);
+			}
+		}.started();
+	}
+
+	@Test
+	public void serverIsKeyedByPortOfManagementConnector() {
+		assertEquals("10.0.0.1:1099", ServerCoordinator.keyOf(
+				new ServerBean("default", "", 1099, "10.0.0.1", 60, 0, false)));
+		assertEquals("10.0.0.1:9990", ServerCoordinator.keyOf(new ServerBean("", "", "10.0.0.1", "wildfly",
+				1099, 60, 1, ConnectorEnum.HTTP, 9990, null, null)));
+	}
+
+	@Test
+	public void concurrentStartsLaunchOnce() throws Exception {
+		Build first = start(false);
+		assertTrue(launched.await(10, TimeUnit.SECONDS));
+		Build second = start(false);
+		second.awaitLog("already in progress by another build");
+
+		release.countDown();
+
+		assertEquals(Boolean.TRUE, first.finished().result);
+		assertEquals(Boolean.TRUE, second.finished().result);
+		assertEquals(1, launches.get());
+	}
+
+	@Test
+	public void startAndWaitJoiningPlainStartGetsNull() throws Exception {
+		Build start = start(false);
+		assertTrue(launched.await(10, TimeUnit.SECONDS));
+		Build startAndWait = start(true);
+		startAndWait.awaitLog("already in progress by another build");
+
+		release.countDown();
+
+		assertEquals(Boolean.TRUE, start.finished().result);
+		assertNull(startAndWait.finished().result);
+		assertEquals(1, launches.get());
+	}
+
+	@Test
+	public void stopWaitsForStartInFlight() throws Exception {
+		final AtomicInteger stops = new AtomicInteger();
+		Build start = start(false);
+		assertTrue(launched.await(10, TimeUnit.SECONDS));
+		Build stop = new Build() {
+			@Override
+			Object perform() throws Exception {
+				return coordinator.stop(new Callable<Boolean>() {
+					public Boolean call() {
+						assertTrue("launch released before the stop", release.getCount() == 0);
+						stops.incrementAndGet();
+						return Boolean.TRUE;
+					}
+				}, listener);
+			}
+		}.started();
+		stop.awaitLog("in progress by another build, waiting");
+		assertEquals(0, stops.get());
+
+		release.countDown();
+
+		assertEquals(Boolean.TRUE, start.finished().result);
+		assertEquals(Boolean.TRUE, stop.finished().result);
+		assertEquals(1, stops.get());
+	}
+
+	@Test
+	public void joinersRetryStartOfInterruptedLeader() throws Exception {
+		Build leader = start(false);
+		assertTrue(launched.await(10, TimeUnit.SECONDS));
+		Build joiner = start(true);
+		joiner.awaitLog("already in progress by another build");
+
+		leader.interrupt();
+		assertTrue(leader.finished().error instanceof InterruptedException);
+		joiner.awaitLog("interrupted in another build, starting again");
+		release.countDown();
+
+		assertEquals(Boolean.TRUE, joiner.finished().result);
+		assertEquals(2, launches.get());
+	}
+}